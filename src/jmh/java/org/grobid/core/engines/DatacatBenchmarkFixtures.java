@@ -0,0 +1,310 @@
+package org.grobid.core.engines;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.text.StringEscapeUtils;
+import org.grobid.core.document.DatacatDocumentCache;
+import org.grobid.core.document.Document;
+import org.grobid.core.document.DocumentPiece;
+import org.grobid.core.document.DocumentPointer;
+import org.grobid.core.document.DocumentSource;
+import org.grobid.core.engines.config.GrobidAnalysisConfig;
+import org.grobid.core.exceptions.GrobidResourceException;
+import org.grobid.core.features.FeaturesVectorDatacatEntries;
+import org.grobid.core.features.FeaturesVectorDatacatSegmenter;
+import org.grobid.core.main.GrobidHomeFinder;
+import org.grobid.core.main.LibraryLoader;
+import org.grobid.core.utilities.DatacatArtifacts;
+import org.grobid.core.utilities.DatacatConfiguration;
+import org.grobid.core.utilities.GrobidConfig.ModelParameters;
+import org.grobid.core.utilities.GrobidProperties;
+import org.grobid.core.utilities.TextUtilities;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.regex.Pattern;
+
+/**
+ * Fixtures of the datacat benchmarks, built from the evaluation data under resources/dataset/{model}/evaluation.
+ *
+ * The featured sequences are the raw evaluation files. The evaluation set has no PDF, so the documents are
+ * rebuilt from the text of the evaluation TEI files: every line of the TEI becomes a line of a synthetic ALTO
+ * file (blocks are separated by the empty lines, 45 lines per page) which is then tokenized as a pdfalto output.
+ * The layout is therefore regular, but the number of pages, blocks, lines and tokens is the one of the real
+ * catalogues.
+ *
+ * The paths are relative to the project directory (the working directory of the jmh task), the GROBID home
+ * and the models are the ones of resources/config/grobid-datacat.yaml. The caches are never enabled.
+ */
+public class DatacatBenchmarkFixtures {
+
+    public static final String SEGMENTER_DATASET = "resources/dataset/datacat-segmenter/evaluation";
+    public static final String BODY_DATASET = "resources/dataset/datacat-body-segmentation/evaluation";
+    public static final String CONFIG = "resources/config/grobid-datacat.yaml";
+
+    private static final int LINES_PER_PAGE = 45;
+    private static final int PAGE_WIDTH = 595;
+    private static final int PAGE_HEIGHT = 842;
+    private static final int LINE_HEIGHT = 12;
+    private static final int CHAR_WIDTH = 6;
+    private static final int MARGIN = 50;
+
+    private static final Pattern TAG = Pattern.compile("</?[a-zA-Z][a-zA-Z0-9]*(\\s[^<>]*)?/?>");
+
+    private static boolean grobidInitialised = false;
+
+    /**
+     * Initialise GROBID with the configuration of the project, once per JVM.
+     */
+    public static synchronized void initGrobid() {
+        if (grobidInitialised)
+            return;
+        try {
+            ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+            DatacatConfiguration datacatConfiguration = mapper.readValue(new File(CONFIG), DatacatConfiguration.class);
+            GrobidHomeFinder grobidHomeFinder = new GrobidHomeFinder(Arrays.asList(datacatConfiguration.getGrobidHome()));
+            GrobidProperties.getInstance(grobidHomeFinder);
+            for (ModelParameters theModel : datacatConfiguration.getModels())
+                GrobidProperties.getInstance().addModel(theModel);
+            LibraryLoader.load();
+        } catch (IOException e) {
+            throw new GrobidResourceException("Cannot read the configuration " + CONFIG, e);
+        }
+        grobidInitialised = true;
+    }
+
+    /**
+     * @return the content of the raw (featured) evaluation files of a dataset, in file name order, the files
+     * can be compressed
+     */
+    public static List<String> readFeaturedSequences(String dataset) {
+        List<String> sequences = new ArrayList<>();
+        for (File file : listFiles(new File(dataset, "raw"))) {
+            try (Reader reader = DatacatArtifacts.openReader(file)) {
+                sequences.add(IOUtils.toString(reader));
+            } catch (IOException e) {
+                throw new GrobidResourceException("Cannot read the benchmark fixture " + file.getPath(), e);
+            }
+        }
+        return sequences;
+    }
+
+    /**
+     * @return one tokenized document per TEI evaluation file of a dataset, in file name order
+     */
+    public static List<Document> buildDocuments(String dataset, File workingDirectory) {
+        List<Document> documents = new ArrayList<>();
+        for (File teiFile : listFiles(new File(dataset, "tei"))) {
+            try {
+                String tei = FileUtils.readFileToString(teiFile, StandardCharsets.UTF_8);
+                File altoFile = new File(workingDirectory, teiFile.getName() + ".alto.xml");
+                FileUtils.writeStringToFile(altoFile, toAlto(teiText(tei)), StandardCharsets.UTF_8);
+
+                DocumentSource documentSource = DatacatDocumentCache.fromAlto(altoFile, null);
+                Document doc = new Document(documentSource);
+                doc.addTokenizedDocument(GrobidAnalysisConfig.defaultInstance());
+                doc.produceStatistics();
+                documents.add(doc);
+            } catch (IOException e) {
+                throw new GrobidResourceException("Cannot build the benchmark document of " + teiFile.getPath(), e);
+            }
+        }
+        return documents;
+    }
+
+    /**
+     * @return a single document piece covering the whole document, used as body so that the body benchmarks do
+     * not depend on the result of the segmentation model
+     */
+    public static SortedSet<DocumentPiece> wholeDocument(Document doc) {
+        SortedSet<DocumentPiece> parts = new TreeSet<>();
+        int lastBlock = doc.getBlocks().size() - 1;
+        int lastToken = doc.getTokenizations().size() - 1;
+        parts.add(new DocumentPiece(new DocumentPointer(doc, 0, 0), new DocumentPointer(doc, lastBlock, lastToken)));
+        return parts;
+    }
+
+    /**
+     * @return the feature vectors of the raw evaluation files of the datacat-segmenter model
+     */
+    public static List<FeaturesVectorDatacatSegmenter> readSegmenterVectors() {
+        List<FeaturesVectorDatacatSegmenter> vectors = new ArrayList<>();
+        for (String sequence : readFeaturedSequences(SEGMENTER_DATASET)) {
+            for (String line : sequence.split("\n")) {
+                String[] fields = line.trim().split("\\s+");
+                if (fields.length < 33)
+                    continue;
+                FeaturesVectorDatacatSegmenter vector = new FeaturesVectorDatacatSegmenter();
+                vector.string = fields[0];
+                vector.secondString = fields[1];
+                vector.blockStatus = fields[7];
+                vector.pageStatus = fields[8];
+                vector.fontStatus = fields[9];
+                vector.fontSize = fields[10];
+                vector.bold = flag(fields[11]);
+                vector.italic = flag(fields[12]);
+                vector.capitalisation = fields[13];
+                vector.digit = fields[14];
+                vector.singleChar = flag(fields[15]);
+                vector.properName = flag(fields[16]);
+                vector.commonName = flag(fields[17]);
+                vector.firstName = flag(fields[18]);
+                vector.year = flag(fields[19]);
+                vector.month = flag(fields[20]);
+                vector.email = flag(fields[21]);
+                vector.http = flag(fields[22]);
+                vector.relativeDocumentPosition = Integer.parseInt(fields[23]);
+                vector.relativePagePosition = Integer.parseInt(fields[24]);
+                vector.punctuationProfile = "no".equals(fields[25]) ? null : fields[25];
+                vector.lineLength = Integer.parseInt(fields[27]);
+                vector.bitmapAround = flag(fields[28]);
+                vector.vectorAround = flag(fields[29]);
+                vector.repetitivePattern = flag(fields[30]);
+                vector.firstRepetitivePattern = flag(fields[31]);
+                vector.inMainArea = flag(fields[32]);
+                vectors.add(vector);
+            }
+        }
+        return vectors;
+    }
+
+    /**
+     * @return the feature vectors of the raw evaluation files of the datacat-body-segmentation model
+     */
+    public static List<FeaturesVectorDatacatEntries> readEntriesVectors() {
+        List<FeaturesVectorDatacatEntries> vectors = new ArrayList<>();
+        for (String sequence : readFeaturedSequences(BODY_DATASET)) {
+            for (String line : sequence.split("\n")) {
+                String[] fields = line.trim().split("\\s+");
+                if (fields.length < 24)
+                    continue;
+                FeaturesVectorDatacatEntries vector = new FeaturesVectorDatacatEntries();
+                vector.string = fields[0];
+                vector.blockStatus = fields[10];
+                vector.lineStatus = fields[11];
+                vector.alignmentStatus = fields[12];
+                vector.fontStatus = fields[13];
+                vector.fontSize = fields[14];
+                vector.bold = flag(fields[15]);
+                vector.italic = flag(fields[16]);
+                vector.capitalisation = fields[17];
+                vector.digit = fields[18];
+                vector.singleChar = flag(fields[19]);
+                vector.punctType = fields[20];
+                vector.relativeDocumentPosition = Integer.parseInt(fields[21]);
+                vector.relativePagePosition = Integer.parseInt(fields[22]);
+                vector.bitmapAround = flag(fields[23]);
+                vectors.add(vector);
+            }
+        }
+        return vectors;
+    }
+
+    private static boolean flag(String field) {
+        return "1".equals(field);
+    }
+
+    private static List<File> listFiles(File directory) {
+        File[] files = directory.listFiles(File::isFile);
+        if (files == null || files.length == 0)
+            throw new GrobidResourceException("No benchmark fixture in " + directory.getAbsolutePath() +
+                ", the benchmarks must be run from the project directory");
+        Arrays.sort(files);
+        return Arrays.asList(files);
+    }
+
+    // text lines of the <text> element of a training TEI file
+    static List<String> teiText(String tei) {
+        int start = tei.indexOf("<text");
+        int end = tei.lastIndexOf("</text>");
+        if (start != -1)
+            tei = tei.substring(tei.indexOf('>', start) + 1, end == -1 ? tei.length() : end);
+        String text = TAG.matcher(tei).replaceAll("");
+        List<String> lines = new ArrayList<>();
+        for (String line : text.split("\r?\n")) {
+            lines.add(StringEscapeUtils.unescapeXml(line).trim());
+        }
+        return lines;
+    }
+
+    // a minimal ALTO document with one TextLine per non empty line, the empty lines end the current block
+    static String toAlto(List<String> lines) {
+        StringBuilder alto = new StringBuilder();
+        alto.append("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+        alto.append("<alto xmlns=\"http://www.loc.gov/standards/alto/ns-v3#\">\n<Styles>\n");
+        alto.append("<TextStyle ID=\"font0\" FONTFAMILY=\"times\" FONTSIZE=\"10.000\" FONTTYPE=\"serif\" " +
+            "FONTWIDTH=\"proportional\" FONTCOLOR=\"#000000\" FONTSTYLE=\"\"/>\n");
+        alto.append("</Styles>\n<Layout>\n");
+
+        int pageNumber = 0;
+        int lineInPage = LINES_PER_PAGE;
+        int blockNumber = 0;
+        boolean inBlock = false;
+        int tokenNumber = 0;
+        for (String line : lines) {
+            if (line.isEmpty() || lineInPage == LINES_PER_PAGE) {
+                if (inBlock) {
+                    alto.append("</TextBlock>\n");
+                    inBlock = false;
+                }
+                if (line.isEmpty())
+                    continue;
+            }
+            if (lineInPage == LINES_PER_PAGE) {
+                if (pageNumber > 0)
+                    alto.append("</PrintSpace>\n</Page>\n");
+                pageNumber++;
+                lineInPage = 0;
+                alto.append("<Page ID=\"Page").append(pageNumber).append("\" PHYSICAL_IMG_NR=\"").append(pageNumber)
+                    .append("\" WIDTH=\"").append(PAGE_WIDTH).append("\" HEIGHT=\"").append(PAGE_HEIGHT).append("\">\n");
+                alto.append("<PrintSpace>\n");
+            }
+            int y = MARGIN + lineInPage * LINE_HEIGHT;
+            int width = Math.min(line.length() * CHAR_WIDTH, PAGE_WIDTH - 2 * MARGIN);
+            if (!inBlock) {
+                blockNumber++;
+                alto.append("<TextBlock ID=\"p").append(pageNumber).append("_b").append(blockNumber)
+                    .append("\" HPOS=\"").append(MARGIN).append("\" VPOS=\"").append(y)
+                    .append("\" WIDTH=\"").append(PAGE_WIDTH - 2 * MARGIN).append("\" HEIGHT=\"").append(LINE_HEIGHT)
+                    .append("\">\n");
+                inBlock = true;
+            }
+            alto.append("<TextLine WIDTH=\"").append(width).append("\" HEIGHT=\"").append(LINE_HEIGHT)
+                .append("\" HPOS=\"").append(MARGIN).append("\" VPOS=\"").append(y).append("\">\n");
+            int x = MARGIN;
+            boolean first = true;
+            for (String word : line.split("\\s+")) {
+                if (!first) {
+                    alto.append("<SP WIDTH=\"").append(CHAR_WIDTH).append("\" VPOS=\"").append(y)
+                        .append("\" HPOS=\"").append(x).append("\"/>\n");
+                    x += CHAR_WIDTH;
+                }
+                tokenNumber++;
+                alto.append("<String ID=\"p").append(pageNumber).append("_w").append(tokenNumber)
+                    .append("\" CONTENT=\"").append(TextUtilities.HTMLEncode(word))
+                    .append("\" HPOS=\"").append(x).append("\" VPOS=\"").append(y)
+                    .append("\" WIDTH=\"").append(word.length() * CHAR_WIDTH).append("\" HEIGHT=\"").append(LINE_HEIGHT)
+                    .append("\" STYLEREFS=\"font0\"/>\n");
+                x += word.length() * CHAR_WIDTH;
+                first = false;
+            }
+            alto.append("</TextLine>\n");
+            lineInPage++;
+        }
+        if (inBlock)
+            alto.append("</TextBlock>\n");
+        if (pageNumber > 0)
+            alto.append("</PrintSpace>\n</Page>\n");
+        alto.append("</Layout>\n</alto>\n");
+        return alto.toString();
+    }
+}
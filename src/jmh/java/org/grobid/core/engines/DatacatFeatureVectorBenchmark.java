@@ -0,0 +1,66 @@
+package org.grobid.core.engines;
+
+import org.grobid.core.features.FeaturesVectorDatacatEntries;
+import org.grobid.core.features.FeaturesVectorDatacatSegmenter;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization of the feature vectors of the evaluation sets, one string per vector with printVector() and
+ * into a single reused buffer with writeTo(). One operation writes all the vectors of the evaluation set of a
+ * model. No GROBID initialisation is needed.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class DatacatFeatureVectorBenchmark {
+
+    private List<FeaturesVectorDatacatSegmenter> segmenterVectors;
+    private List<FeaturesVectorDatacatEntries> entriesVectors;
+    private StringBuilder buffer;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        segmenterVectors = DatacatBenchmarkFixtures.readSegmenterVectors();
+        entriesVectors = DatacatBenchmarkFixtures.readEntriesVectors();
+        buffer = new StringBuilder(1024 * 1024);
+    }
+
+    @Benchmark
+    public void segmenterPrintVector(Blackhole blackhole) {
+        for (FeaturesVectorDatacatSegmenter vector : segmenterVectors) {
+            blackhole.consume(vector.printVector());
+        }
+    }
+
+    @Benchmark
+    public int segmenterWriteTo() {
+        buffer.setLength(0);
+        for (FeaturesVectorDatacatSegmenter vector : segmenterVectors) {
+            vector.writeTo(buffer);
+        }
+        return buffer.length();
+    }
+
+    @Benchmark
+    public void entriesPrintVector(Blackhole blackhole) {
+        for (FeaturesVectorDatacatEntries vector : entriesVectors) {
+            blackhole.consume(vector.printVector());
+        }
+    }
+
+    @Benchmark
+    public int entriesWriteTo() {
+        buffer.setLength(0);
+        for (FeaturesVectorDatacatEntries vector : entriesVectors) {
+            vector.writeTo(buffer);
+        }
+        return buffer.length();
+    }
+}
@@ -0,0 +1,72 @@
+package org.grobid.core.engines;
+
+import org.apache.commons.io.FileUtils;
+import org.grobid.core.document.Document;
+import org.grobid.core.document.DocumentPiece;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Featurization of the evaluation documents for the datacat-segmenter (one vector per line) and the
+ * datacat-body-segmentation (one vector per token) models. One operation featurizes all the documents of the
+ * evaluation set.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class DatacatFeaturizerBenchmark {
+
+    private File workingDirectory;
+    private EngineDatacatParsers parsers;
+    private DatacatSegmenterParser segmenterParser;
+    private List<Document> segmenterDocuments;
+    private List<Document> bodyDocuments;
+    private List<SortedSet<DocumentPiece>> bodyParts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        DatacatBenchmarkFixtures.initGrobid();
+        workingDirectory = Files.createTempDirectory("datacat-jmh").toFile();
+        parsers = new EngineDatacatParsers();
+        segmenterParser = parsers.getDatacatSegmenterParser();
+
+        segmenterDocuments =
+            DatacatBenchmarkFixtures.buildDocuments(DatacatBenchmarkFixtures.SEGMENTER_DATASET, workingDirectory);
+        bodyDocuments = DatacatBenchmarkFixtures.buildDocuments(DatacatBenchmarkFixtures.BODY_DATASET, workingDirectory);
+        bodyParts = new ArrayList<>();
+        for (Document doc : bodyDocuments) {
+            bodyParts.add(DatacatBenchmarkFixtures.wholeDocument(doc));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        parsers.close();
+        FileUtils.deleteQuietly(workingDirectory);
+    }
+
+    @Benchmark
+    public void getAllLinesFeatured(Blackhole blackhole) {
+        for (Document doc : segmenterDocuments) {
+            blackhole.consume(segmenterParser.getAllLinesFeatured(doc));
+        }
+    }
+
+    @Benchmark
+    public void getBodyTextFeatured(Blackhole blackhole) {
+        for (int i = 0; i < bodyDocuments.size(); i++) {
+            blackhole.consume(DatacatBodySegmentationParser.getBodyTextFeatured(bodyDocuments.get(i), bodyParts.get(i)));
+        }
+    }
+}
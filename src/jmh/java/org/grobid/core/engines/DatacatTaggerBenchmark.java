@@ -0,0 +1,143 @@
+package org.grobid.core.engines;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.output.NullOutputStream;
+import org.apache.commons.lang3.tuple.Pair;
+import org.grobid.core.document.DatacatTeiWriter;
+import org.grobid.core.document.Document;
+import org.grobid.core.layout.LayoutToken;
+import org.grobid.core.layout.LayoutTokenization;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Labeling of the evaluation sets with the datacat-segmenter and datacat-body-segmentation models, and
+ * generation of the training TEI from the labeled results, serialized to a null stream. One operation processes
+ * all the files of the evaluation set of a model. The label cache is not enabled, every operation runs the tagger.
+ *
+ * The *TaggerInput benchmarks measure the encoding of the same sequences into the UTF-8 text handed to Wapiti
+ * through JNI, the only part of label() that an integer encoding of the features could avoid: Wapiti parses and
+ * interns the feature strings itself, from its text template.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = "-Xmx3g")
+@Warmup(iterations = 3, time = 10)
+@Measurement(iterations = 5, time = 10)
+public class DatacatTaggerBenchmark {
+
+    private File workingDirectory;
+    private EngineDatacatParsers parsers;
+    private DatacatSegmenterParser segmenterParser;
+    private DatacatBodySegmentationParser bodyParser;
+
+    private List<String> segmenterSequences;
+    private List<String> bodySequences;
+
+    // labeled results with their tokens, for the training TEI generation
+    private List<Document> segmenterDocuments;
+    private List<String> segmenterResults;
+    private List<String> bodyResults;
+    private List<List<LayoutToken>> bodyTokenizations;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        DatacatBenchmarkFixtures.initGrobid();
+        workingDirectory = Files.createTempDirectory("datacat-jmh").toFile();
+        parsers = new EngineDatacatParsers();
+        segmenterParser = parsers.getDatacatSegmenterParser();
+        bodyParser = parsers.getDatacatBodySegmentationParser();
+
+        segmenterSequences = DatacatBenchmarkFixtures.readFeaturedSequences(DatacatBenchmarkFixtures.SEGMENTER_DATASET);
+        bodySequences = DatacatBenchmarkFixtures.readFeaturedSequences(DatacatBenchmarkFixtures.BODY_DATASET);
+
+        segmenterDocuments = new ArrayList<>();
+        segmenterResults = new ArrayList<>();
+        for (Document doc : DatacatBenchmarkFixtures.buildDocuments(DatacatBenchmarkFixtures.SEGMENTER_DATASET,
+            workingDirectory)) {
+            String features = segmenterParser.getAllLinesFeatured(doc);
+            if (features == null)
+                continue;
+            segmenterDocuments.add(doc);
+            segmenterResults.add(segmenterParser.label(features));
+        }
+
+        bodyResults = new ArrayList<>();
+        bodyTokenizations = new ArrayList<>();
+        for (Document doc : DatacatBenchmarkFixtures.buildDocuments(DatacatBenchmarkFixtures.BODY_DATASET,
+            workingDirectory)) {
+            Pair<String, LayoutTokenization> featSeg =
+                DatacatBodySegmentationParser.getBodyTextFeatured(doc, DatacatBenchmarkFixtures.wholeDocument(doc));
+            if (featSeg == null)
+                continue;
+            bodyResults.add(bodyParser.label(featSeg.getLeft()));
+            bodyTokenizations.add(featSeg.getRight().getTokenization());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        parsers.close();
+        FileUtils.deleteQuietly(workingDirectory);
+    }
+
+    @Benchmark
+    public void labelSegmenter(Blackhole blackhole) {
+        for (String sequence : segmenterSequences) {
+            blackhole.consume(segmenterParser.label(sequence));
+        }
+    }
+
+    @Benchmark
+    public void labelBody(Blackhole blackhole) {
+        for (String sequence : bodySequences) {
+            blackhole.consume(bodyParser.label(sequence));
+        }
+    }
+
+    @Benchmark
+    public void segmenterTaggerInput(Blackhole blackhole) {
+        for (String sequence : segmenterSequences) {
+            blackhole.consume(sequence.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Benchmark
+    public void bodyTaggerInput(Blackhole blackhole) {
+        for (String sequence : bodySequences) {
+            blackhole.consume(sequence.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    @Benchmark
+    public void segmenterTrainingExtraction() throws Exception {
+        for (int i = 0; i < segmenterDocuments.size(); i++) {
+            Document doc = segmenterDocuments.get(i);
+            try (DatacatTeiWriter tei = new DatacatTeiWriter(new NullOutputStream())) {
+                tei.startTrainingDocument(String.valueOf(i), "fr");
+                segmenterParser.trainingExtraction(segmenterResults.get(i), doc.getTokenizations(), doc, tei);
+                tei.endTrainingDocument();
+            }
+        }
+    }
+
+    @Benchmark
+    public void bodyTrainingExtraction() throws Exception {
+        for (int i = 0; i < bodyResults.size(); i++) {
+            try (DatacatTeiWriter tei = new DatacatTeiWriter(new NullOutputStream())) {
+                tei.startTrainingDocument(String.valueOf(i), "fr");
+                bodyParser.trainingExtraction(bodyResults.get(i), bodyTokenizations.get(i), tei);
+                tei.endTrainingDocument();
+            }
+        }
+    }
+}
@@ -7,6 +7,8 @@ import org.grobid.core.layout.BoundingBox;
 import org.grobid.core.layout.LayoutToken;
 import org.grobid.core.tokenization.TaggingTokenCluster;
 import org.grobid.core.tokenization.TaggingTokenClusteror;
+import org.grobid.core.utilities.BoundingBoxCalculator;
+import org.grobid.core.utilities.LayoutTokensUtil;
 import org.grobid.core.utilities.TextUtilities;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -16,11 +18,18 @@ import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
-
+/**
+ * A structure identified in the body of a sale catalogue by the datacat-body-segmentation model:
+ * a catalogue entry (lot), a title or a title description, with its layout tokens and its coordinates
+ * in the original PDF.
+ */
 public class EntryItem {
 
     protected static final Logger LOGGER = LoggerFactory.getLogger(EntryItem.class);
 
+    // label of the item, one of <entry>, <title> or <titledesc>
+    private TaggingLabel label = null;
+
     private List<BoundingBox> coordinates = null;
 
     // map of labels (e.g. <affiliation> or <org>) to LayoutToken
@@ -28,4 +37,108 @@ public class EntryItem {
 
     private List<LayoutToken> entry = new ArrayList<>();
 
+    public EntryItem() {
+    }
+
+    public EntryItem(TaggingLabel label) {
+        this.label = label;
+    }
+
+    public TaggingLabel getLabel() {
+        return label;
+    }
+
+    public void setLabel(TaggingLabel label) {
+        this.label = label;
+    }
+
+    /**
+     * @return the label name as produced by the model, e.g. "entry" for <entry>
+     */
+    public String getLabelName() {
+        if (label == null)
+            return null;
+        return label.getLabel().replace("<", "").replace(">", "");
+    }
+
+    public void addLayoutTokens(List<LayoutToken> tokens) {
+        if (tokens == null)
+            return;
+        entry.addAll(tokens);
+        if (label != null) {
+            if (labeledTokens == null)
+                labeledTokens = new TreeMap<>();
+            List<LayoutToken> labelTokens = labeledTokens.get(label.getLabel());
+            if (labelTokens == null) {
+                labelTokens = new ArrayList<>();
+                labeledTokens.put(label.getLabel(), labelTokens);
+            }
+            labelTokens.addAll(tokens);
+        }
+        // coordinates are computed again on demand
+        coordinates = null;
+    }
+
+    public List<LayoutToken> getLayoutTokens() {
+        return entry;
+    }
+
+    public Map<String, List<LayoutToken>> getLabeledTokens() {
+        return labeledTokens;
+    }
+
+    /**
+     * @return the text of the item, with the end of lines and multiple spaces normalised
+     */
+    public String getText() {
+        if (entry.isEmpty())
+            return "";
+        return LayoutTokensUtil.toText(entry).replaceAll("[\\s\\u00A0]+", " ").trim();
+    }
+
+    /**
+     * @return the bounding boxes of the item in the original PDF, one per line or per page area
+     */
+    public List<BoundingBox> getCoordinates() {
+        if (coordinates == null && !entry.isEmpty())
+            coordinates = BoundingBoxCalculator.calculate(entry);
+        return coordinates;
+    }
+
+    public void setCoordinates(List<BoundingBox> coordinates) {
+        this.coordinates = coordinates;
+    }
+
+    /**
+     * @return the coordinates in the GROBID TEI format: page,x,y,width,height separated by ;, null if the item
+     * has no coordinates
+     */
+    public String getCoordinatesString() {
+        List<BoundingBox> boxes = getCoordinates();
+        if (boxes == null || boxes.isEmpty())
+            return null;
+        StringBuilder coords = new StringBuilder();
+        for (BoundingBox box : boxes) {
+            if (coords.length() > 0)
+                coords.append(';');
+            coords.append(box.toString());
+        }
+        return coords.toString();
+    }
+
+    /**
+     * @return the number of the page where the item starts, -1 if unknown
+     */
+    public int getPage() {
+        for (LayoutToken token : entry) {
+            if (token.getPage() != -1)
+                return token.getPage();
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return (label == null ? "<unknown>" : label.getLabel()) + " " + getText();
+    }
 }
@@ -0,0 +1,377 @@
+package org.grobid.core.document;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.grobid.core.exceptions.GrobidResourceException;
+import org.grobid.core.utilities.DatacatMetrics;
+import org.grobid.core.utilities.GrobidProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.lang.reflect.Constructor;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * On-disk cache of the pdfalto output, addressed by the MD5 of the PDF and the pdfalto parameters (page range,
+ * images, annotations and outline).
+ *
+ * On a cache miss, the PDF is converted by pdfalto as usual and a copy of the ALTO file (gzipped) and of its
+ * sibling files (annotations, outline, metadata and extracted images) is stored in the cache. On a hit, these
+ * files are restored in the GROBID temp directory and a DocumentSource pointing to them is returned, so that
+ * pdfalto is not run again: only the tokenization of the ALTO file, the featurization and the labeling are
+ * repeated. DocumentSource.close() only removes the files produced by pdfalto, the document sources obtained
+ * from this class must be closed with DatacatDocumentCache.close(), which also removes the restored files.
+ *
+ * DocumentSource has no public constructor besides fromPdf(), which always runs pdfalto, the restored
+ * document sources are created with its private constructor (see fromAlto()). When this constructor is not
+ * available, after an upgrade of GROBID, the cache is not enabled and an error is logged.
+ *
+ * The total size of the cache is capped, the least recently used entries are evicted first. The cache is
+ * disabled until it is configured with a directory, fromPdf() then simply calls DocumentSource.fromPdf().
+ */
+public class DatacatDocumentCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatacatDocumentCache.class);
+
+    private static final String ALTO_FILE = "alto.xml.gz";
+    private static final String SIBLING_PREFIX = "alto";
+    private static final String ENTRY_PROPERTIES = "entry.properties";
+    private static final String ORIGINAL_XML_PATH = "xmlPath";
+
+    private static volatile DatacatDocumentCache instance = new DatacatDocumentCache(null, 0L);
+
+    // constructor of the document sources restored from the cache, null if not available
+    private static final Constructor<DocumentSource> SOURCE_CONSTRUCTOR = findSourceConstructor();
+
+    // restored document source -> restored ALTO file, the restored files are removed by close()
+    private static final Map<DocumentSource, File> RESTORED = Collections.synchronizedMap(new WeakHashMap<>());
+
+    private final File cacheDirectory;
+    private final long maxSize;
+
+    // entry key -> entry size in bytes, in access order for the LRU eviction
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalSize = 0L;
+
+    private long nbHits = 0L;
+    private long nbMisses = 0L;
+
+    /**
+     * @param cacheDirectory directory of the cache, null for a disabled cache
+     * @param maxSize        maximum size of the cache in bytes
+     */
+    public DatacatDocumentCache(File cacheDirectory, long maxSize) {
+        this.cacheDirectory = cacheDirectory;
+        this.maxSize = maxSize;
+        if (cacheDirectory != null)
+            loadEntries();
+    }
+
+    public static DatacatDocumentCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Enable the shared cache in the given directory.
+     */
+    public static void configure(File cacheDirectory, long maxSize) {
+        if (SOURCE_CONSTRUCTOR == null) {
+            LOGGER.error("The document sources cannot be restored with this version of GROBID, " +
+                "the pdfalto cache is disabled");
+            return;
+        }
+        instance = new DatacatDocumentCache(cacheDirectory, maxSize);
+        LOGGER.info("pdfalto cache enabled in " + cacheDirectory.getAbsolutePath() + ", " +
+            instance.entries.size() + " entries, " + (instance.totalSize / (1024 * 1024)) + " MB");
+    }
+
+    public boolean isEnabled() {
+        return cacheDirectory != null;
+    }
+
+    /**
+     * Same as DocumentSource.fromPdf(), but the pdfalto output is taken from the cache when available.
+     */
+    public DocumentSource fromPdf(File pdfFile, int startPage, int endPage,
+                                  boolean withImages, boolean withAnnotations, boolean withOutline) {
+        if (!isEnabled())
+            return convert(pdfFile, startPage, endPage, withImages, withAnnotations, withOutline);
+
+        String md5 = md5(pdfFile);
+        String key = md5 + "_" + startPage + "_" + endPage + "_" +
+            (withImages ? "i" : "") + (withAnnotations ? "a" : "") + (withOutline ? "o" : "");
+
+        DocumentSource cached = restore(key, pdfFile, md5);
+        if (cached != null)
+            return cached;
+
+        DocumentSource documentSource =
+            convert(pdfFile, startPage, endPage, withImages, withAnnotations, withOutline);
+        documentSource.setMD5(md5);
+        store(key, documentSource);
+        return documentSource;
+    }
+
+    private static DocumentSource convert(File pdfFile, int startPage, int endPage,
+                                          boolean withImages, boolean withAnnotations, boolean withOutline) {
+        try (DatacatMetrics.Sample sample = DatacatMetrics.time(DatacatMetrics.PDFALTO)) {
+            return DocumentSource.fromPdf(pdfFile, startPage, endPage, withImages, withAnnotations, withOutline);
+        }
+    }
+
+    private DocumentSource restore(String key, File pdfFile, String md5) {
+        File entryDirectory = new File(cacheDirectory, key);
+        synchronized (this) {
+            if (entries.get(key) == null || !entryDirectory.exists()) {
+                nbMisses++;
+                DatacatMetrics.count(DatacatMetrics.PDFALTO_CACHE_MISSES);
+                return null;
+            }
+            nbHits++;
+            DatacatMetrics.count(DatacatMetrics.PDFALTO_CACHE_HITS);
+            entryDirectory.setLastModified(System.currentTimeMillis());
+        }
+
+        File restoredXml = null;
+        try {
+            Properties properties = new Properties();
+            try (InputStream in = new FileInputStream(new File(entryDirectory, ENTRY_PROPERTIES))) {
+                properties.load(in);
+            }
+            String originalXmlPath = properties.getProperty(ORIGINAL_XML_PATH);
+
+            restoredXml = File.createTempFile("datacat", ".lxml", GrobidProperties.getTempPath());
+            boolean withAssets = false;
+            File[] files = entryDirectory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    String name = file.getName();
+                    if (name.equals(ALTO_FILE) || name.equals(ENTRY_PROPERTIES) || !name.startsWith(SIBLING_PREFIX))
+                        continue;
+                    File target = new File(restoredXml.getPath() + name.substring(SIBLING_PREFIX.length()));
+                    if (file.isDirectory()) {
+                        FileUtils.copyDirectory(file, target);
+                        withAssets = true;
+                    } else {
+                        FileUtils.copyFile(file, target);
+                    }
+                }
+            }
+
+            // the extracted images are referenced with the path of the original pdfalto output
+            restoreAlto(new File(entryDirectory, ALTO_FILE), restoredXml,
+                withAssets ? originalXmlPath : null, restoredXml.getAbsolutePath());
+
+            DocumentSource documentSource = fromAlto(restoredXml, pdfFile);
+            documentSource.setMD5(md5);
+            RESTORED.put(documentSource, restoredXml);
+            LOGGER.debug("pdfalto output of " + pdfFile.getPath() + " restored from the cache");
+            return documentSource;
+        } catch (Exception e) {
+            LOGGER.warn("Cannot restore the cached pdfalto output of " + pdfFile.getPath() + ", pdfalto will be run", e);
+            if (restoredXml != null)
+                deleteRestoredFiles(restoredXml);
+            return null;
+        }
+    }
+
+    private void store(String key, DocumentSource documentSource) {
+        File xmlFile = documentSource.getXmlFile();
+        if (xmlFile == null || !xmlFile.exists())
+            return;
+        synchronized (this) {
+            if (entries.containsKey(key))
+                return;
+        }
+
+        File tmpDirectory = new File(cacheDirectory, key + ".tmp" + Thread.currentThread().getId());
+        try {
+            FileUtils.deleteQuietly(tmpDirectory);
+            if (!tmpDirectory.mkdirs())
+                throw new IOException("Cannot create the directory " + tmpDirectory.getPath());
+
+            try (InputStream in = new FileInputStream(xmlFile);
+                 OutputStream out = new GZIPOutputStream(new FileOutputStream(new File(tmpDirectory, ALTO_FILE)))) {
+                IOUtils.copy(in, out);
+            }
+            File[] siblings = xmlFile.getParentFile().listFiles();
+            if (siblings != null) {
+                for (File sibling : siblings) {
+                    String name = sibling.getName();
+                    if (name.equals(xmlFile.getName()) || !name.startsWith(xmlFile.getName()))
+                        continue;
+                    File target = new File(tmpDirectory, SIBLING_PREFIX + name.substring(xmlFile.getName().length()));
+                    if (sibling.isDirectory())
+                        FileUtils.copyDirectory(sibling, target);
+                    else
+                        FileUtils.copyFile(sibling, target);
+                }
+            }
+            Properties properties = new Properties();
+            properties.setProperty(ORIGINAL_XML_PATH, xmlFile.getAbsolutePath());
+            try (OutputStream out = new FileOutputStream(new File(tmpDirectory, ENTRY_PROPERTIES))) {
+                properties.store(out, "pdfalto output of " + documentSource.getPdfFile());
+            }
+
+            long size = FileUtils.sizeOfDirectory(tmpDirectory);
+            File entryDirectory = new File(cacheDirectory, key);
+            synchronized (this) {
+                if (entries.containsKey(key) || entryDirectory.exists()) {
+                    // stored concurrently by another worker
+                    FileUtils.deleteQuietly(tmpDirectory);
+                    return;
+                }
+                Files.move(tmpDirectory.toPath(), entryDirectory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                entries.put(key, size);
+                totalSize += size;
+                evict();
+            }
+        } catch (Exception e) {
+            LOGGER.warn("Cannot store the pdfalto output of " + documentSource.getPdfFile() + " in the cache", e);
+            FileUtils.deleteQuietly(tmpDirectory);
+        }
+    }
+
+    // remove the least recently used entries until the cache fits in its maximum size
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalSize > maxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            FileUtils.deleteQuietly(new File(cacheDirectory, eldest.getKey()));
+            totalSize -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    // rebuild the index of the entries, the last modification date of an entry being its last access
+    private void loadEntries() {
+        if (!cacheDirectory.exists() && !cacheDirectory.mkdirs()) {
+            throw new GrobidResourceException("Cannot create the cache directory " + cacheDirectory.getAbsolutePath());
+        }
+        File[] directories = cacheDirectory.listFiles(File::isDirectory);
+        if (directories == null)
+            return;
+        Arrays.sort(directories, Comparator.comparingLong(File::lastModified));
+        for (File directory : directories) {
+            if (directory.getName().contains(".tmp") || !new File(directory, ALTO_FILE).exists()) {
+                // incomplete entry
+                FileUtils.deleteQuietly(directory);
+                continue;
+            }
+            long size = FileUtils.sizeOfDirectory(directory);
+            entries.put(directory.getName(), size);
+            totalSize += size;
+        }
+        evict();
+    }
+
+    private static void restoreAlto(File cachedAlto, File target, String originalPath, String newPath) throws IOException {
+        try (InputStream in = new GZIPInputStream(new FileInputStream(cachedAlto))) {
+            if (originalPath == null) {
+                Files.copy(in, target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                return;
+            }
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+                 Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(target), StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    writer.write(line.replace(originalPath, newPath));
+                    writer.write('\n');
+                }
+            }
+        }
+    }
+
+    private static void deleteRestoredFiles(File restoredXml) {
+        File[] files = restoredXml.getParentFile().listFiles();
+        if (files == null)
+            return;
+        for (File file : files) {
+            if (file.getName().startsWith(restoredXml.getName()))
+                FileUtils.deleteQuietly(file);
+        }
+    }
+
+    /**
+     * Close a document source obtained from fromPdf(), as DocumentSource.close(), and remove the files restored
+     * from the cache for this document source.
+     */
+    public static void close(DocumentSource documentSource,
+                             boolean cleanImages, boolean cleanAnnotations, boolean cleanOutline) {
+        if (documentSource == null)
+            return;
+        try {
+            DocumentSource.close(documentSource, cleanImages, cleanAnnotations, cleanOutline);
+        } finally {
+            File restoredXml = RESTORED.remove(documentSource);
+            if (restoredXml != null)
+                deleteRestoredFiles(restoredXml);
+        }
+    }
+
+    /**
+     * Create a document source for an existing ALTO file, without running pdfalto. The ALTO file is not
+     * removed when the document source is closed.
+     *
+     * @param pdfFile the PDF of the ALTO file, can be null
+     */
+    public static DocumentSource fromAlto(File altoFile, File pdfFile) {
+        if (SOURCE_CONSTRUCTOR == null)
+            throw new GrobidResourceException("A document source cannot be created from " + altoFile.getPath() +
+                " with this version of GROBID");
+        DocumentSource documentSource;
+        try {
+            documentSource = SOURCE_CONSTRUCTOR.newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new GrobidResourceException("Cannot create a document source for " + altoFile.getPath(), e);
+        }
+        documentSource.setXmlFile(altoFile);
+        documentSource.setPdfFile(pdfFile);
+        return documentSource;
+    }
+
+    // the constructor of DocumentSource is private, it is normally only called by DocumentSource.fromPdf()
+    private static Constructor<DocumentSource> findSourceConstructor() {
+        try {
+            Constructor<DocumentSource> constructor = DocumentSource.class.getDeclaredConstructor();
+            constructor.setAccessible(true);
+            return constructor;
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            LOGGER.debug("The constructor of DocumentSource is not available", e);
+            return null;
+        }
+    }
+
+    /**
+     * @return the MD5 of a file as an hexadecimal string
+     */
+    public static String md5(File file) {
+        try (InputStream in = new BufferedInputStream(new FileInputStream(file))) {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+            StringBuilder md5 = new StringBuilder(32);
+            for (byte b : digest.digest()) {
+                md5.append(Character.forDigit((b >> 4) & 0xF, 16));
+                md5.append(Character.forDigit(b & 0xF, 16));
+            }
+            return md5.toString();
+        } catch (Exception e) {
+            throw new GrobidResourceException("Cannot compute the MD5 of " + file.getPath(), e);
+        }
+    }
+
+    public synchronized String getSummary() {
+        return entries.size() + " entries, " + (totalSize / (1024 * 1024)) + " MB, " +
+            nbHits + " hits, " + nbMisses + " misses";
+    }
+}
@@ -0,0 +1,125 @@
+package org.grobid.core.document;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.grobid.core.data.EntryItem;
+import org.grobid.core.layout.BoundingBox;
+import org.grobid.core.utilities.DatacatMetrics;
+
+import java.io.*;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * JSON Lines export of the catalogue entries, one record per line and per EntryItem, for the indexing of the
+ * lots by the downstream applications:
+ *
+ * {"catalogue":"...","label":"entry","text":"...","page":3,"coords":"3,72.0,120.5,400.2,11.0",
+ *  "boxes":[{"p":3,"x":72.0,"y":120.5,"w":400.2,"h":11.0}]}
+ *
+ * The records are written with a Jackson streaming generator over a buffered output stream as soon as the
+ * entries are produced, nothing is kept in memory between two records. The writer can be shared by several
+ * threads, the records are written atomically.
+ */
+public class DatacatJsonlWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private final JsonGenerator generator;
+    private int nbRecords = 0;
+
+    /**
+     * @param output the stream is buffered by the writer and closed by close()
+     */
+    public DatacatJsonlWriter(OutputStream output) throws IOException {
+        this.generator = JSON_FACTORY.createGenerator(new BufferedOutputStream(output, BUFFER_SIZE),
+            JsonEncoding.UTF8);
+        // the records are separated by a line break, not by the default space
+        this.generator.setRootValueSeparator(null);
+    }
+
+    public DatacatJsonlWriter(File outputFile) throws IOException {
+        this(new FileOutputStream(outputFile, false));
+    }
+
+    /**
+     * Write the record of an entry.
+     *
+     * @param catalogueId the identifier of the catalogue of the entry, not written if null
+     */
+    public synchronized void write(String catalogueId, EntryItem entry) throws IOException {
+        generator.writeStartObject();
+        if (catalogueId != null)
+            generator.writeStringField("catalogue", catalogueId);
+        writeEntryFields(generator, entry);
+        List<BoundingBox> boxes = entry.getCoordinates();
+        if (boxes != null && !boxes.isEmpty()) {
+            generator.writeArrayFieldStart("boxes");
+            for (BoundingBox box : boxes) {
+                generator.writeStartObject();
+                generator.writeNumberField("p", box.getPage());
+                generator.writeNumberField("x", box.getX());
+                generator.writeNumberField("y", box.getY());
+                generator.writeNumberField("w", box.getWidth());
+                generator.writeNumberField("h", box.getHeight());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+        }
+        generator.writeEndObject();
+        generator.writeRaw('\n');
+        nbRecords++;
+    }
+
+    /**
+     * @return a handler writing the entries of a catalogue, to be passed to the streaming
+     * EngineDatacat.processCatalogue, the IO errors are rethrown as UncheckedIOException. The writing of each
+     * record is timed as serialization, the records being written between the labeling of the entries.
+     */
+    public Consumer<EntryItem> forCatalogue(final String catalogueId) {
+        return entry -> {
+            try (DatacatMetrics.Sample sample = DatacatMetrics.time(DatacatMetrics.SERIALIZATION)) {
+                write(catalogueId, entry);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    /**
+     * @return the identifier of a catalogue when none is given, the MD5 of its PDF, so that the same catalogue
+     * gets the same identifier from the service and from the batch
+     */
+    public static String defaultCatalogueId(File pdfFile) {
+        return DatacatDocumentCache.md5(pdfFile);
+    }
+
+    /**
+     * Write the fields common to all the JSON outputs of an entry: label, text, page, and the coordinates in
+     * the GROBID TEI format (page,x,y,width,height separated by ;) when the entry has coordinates.
+     */
+    public static void writeEntryFields(JsonGenerator generator, EntryItem entry) throws IOException {
+        generator.writeStringField("label", entry.getLabelName());
+        generator.writeStringField("text", entry.getText());
+        generator.writeNumberField("page", entry.getPage());
+        String coords = entry.getCoordinatesString();
+        if (coords != null)
+            generator.writeStringField("coords", coords);
+    }
+
+    public synchronized int getNbRecords() {
+        return nbRecords;
+    }
+
+    public synchronized void flush() throws IOException {
+        generator.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        generator.close();
+    }
+}
@@ -0,0 +1,198 @@
+package org.grobid.core.document;
+
+import com.ctc.wstx.api.InvalidCharHandler;
+import com.ctc.wstx.api.WstxOutputProperties;
+import com.ctc.wstx.stax.WstxOutputFactory;
+import org.grobid.core.exceptions.GrobidException;
+
+import javax.xml.XMLConstants;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamWriter;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming TEI serializer on Woodstox, used for the training TEI files and the TEI output of the service.
+ *
+ * The elements are written to a buffered output stream as soon as they are produced: only the stack of the
+ * open elements is kept in memory, whatever the size of the document. The text and the attribute values are
+ * escaped by the writer and the structure is checked, so the result is always well-formed: the characters
+ * which are not allowed in XML, which can come from the PDF, are replaced by a space, and endDocument closes
+ * the elements still open.
+ *
+ * The whitespace of the layout (indentation, line breaks between the labeled fields) is written explicitly
+ * with whitespace(), the training TEI files being read with xml:space="preserve".
+ */
+public class DatacatTeiWriter implements Closeable {
+
+    public static final String TEI_NS = "http://www.tei-c.org/ns/1.0";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    // the factory is thread-safe once configured
+    private static final XMLOutputFactory OUTPUT_FACTORY = createOutputFactory();
+
+    private final OutputStream output;
+    private final XMLStreamWriter writer;
+    private int depth = 0;
+
+    /**
+     * @param output the stream is buffered by the writer and closed by close()
+     */
+    public DatacatTeiWriter(OutputStream output) {
+        this.output = new BufferedOutputStream(output, BUFFER_SIZE);
+        try {
+            this.writer = OUTPUT_FACTORY.createXMLStreamWriter(this.output, StandardCharsets.UTF_8.name());
+        } catch (XMLStreamException e) {
+            throw new GrobidException("Cannot create the TEI writer", e);
+        }
+    }
+
+    public DatacatTeiWriter(File outputFile) throws FileNotFoundException {
+        this(new FileOutputStream(outputFile, false));
+    }
+
+    private static XMLOutputFactory createOutputFactory() {
+        XMLOutputFactory factory = new WstxOutputFactory();
+        factory.setProperty(WstxOutputProperties.P_OUTPUT_INVALID_CHAR_HANDLER,
+            new InvalidCharHandler.ReplacingHandler(' '));
+        return factory;
+    }
+
+    /**
+     * Start a training TEI file: XML declaration, tei root, header with the id of the document, and the text
+     * element, the labeled fields are then written in the text element.
+     *
+     * @param id   the value of the xml:id of the fileDesc, an empty teiHeader is written if null
+     * @param lang the language of the text
+     */
+    public void startTrainingDocument(String id, String lang) throws XMLStreamException {
+        startDocument();
+        startElement("tei");
+        attribute(XMLConstants.XML_NS_URI, "space", "preserve");
+        whitespace("\n\t");
+        if (id == null) {
+            emptyElement("teiHeader");
+        } else {
+            startElement("teiHeader");
+            whitespace("\n\t\t");
+            emptyElement("fileDesc");
+            attribute(XMLConstants.XML_NS_URI, "id", id);
+            whitespace("\n\t");
+            endElement();
+        }
+        whitespace("\n\t");
+        startElement("text");
+        attribute(XMLConstants.XML_NS_URI, "lang", lang);
+        whitespace("\n");
+    }
+
+    /**
+     * End a training TEI file started with startTrainingDocument.
+     */
+    public void endTrainingDocument() throws XMLStreamException {
+        whitespace("\n\t");
+        endElement();
+        whitespace("\n");
+        endElement();
+        whitespace("\n");
+        endDocument();
+    }
+
+    public void startDocument() throws XMLStreamException {
+        writer.writeStartDocument(StandardCharsets.UTF_8.name(), "1.0");
+        writer.writeCharacters("\n");
+    }
+
+    /**
+     * Close all the elements still open and flush the output.
+     */
+    public void endDocument() throws XMLStreamException {
+        writer.writeEndDocument();
+        depth = 0;
+        writer.flush();
+    }
+
+    public void startElement(String name) throws XMLStreamException {
+        writer.writeStartElement(name);
+        depth++;
+    }
+
+    public void emptyElement(String name) throws XMLStreamException {
+        writer.writeEmptyElement(name);
+    }
+
+    public void endElement() throws XMLStreamException {
+        writer.writeEndElement();
+        depth--;
+    }
+
+    /**
+     * Declare the default namespace on the element just started.
+     */
+    public void defaultNamespace(String namespaceURI) throws XMLStreamException {
+        writer.setDefaultNamespace(namespaceURI);
+        writer.writeDefaultNamespace(namespaceURI);
+    }
+
+    /**
+     * Add an attribute to the element just started.
+     */
+    public void attribute(String name, String value) throws XMLStreamException {
+        writer.writeAttribute(name, value);
+    }
+
+    /**
+     * Add an attribute of the xml namespace (xml:id, xml:lang, xml:space) or of another namespace declared
+     * on the element.
+     */
+    public void attribute(String namespaceURI, String name, String value) throws XMLStreamException {
+        if (XMLConstants.XML_NS_URI.equals(namespaceURI))
+            writer.writeAttribute(XMLConstants.XML_NS_PREFIX, namespaceURI, name, value);
+        else
+            writer.writeAttribute(namespaceURI, name, value);
+    }
+
+    /**
+     * Write text content, escaped by the writer.
+     */
+    public void characters(String text) throws XMLStreamException {
+        if (text != null && !text.isEmpty())
+            writer.writeCharacters(text);
+    }
+
+    /**
+     * Write layout whitespace (indentation, line breaks).
+     */
+    public void whitespace(String whitespace) throws XMLStreamException {
+        writer.writeCharacters(whitespace);
+    }
+
+    /**
+     * @return the number of elements currently open
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    public void flush() throws IOException {
+        try {
+            writer.flush();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        }
+        output.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            writer.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            output.close();
+        }
+    }
+}
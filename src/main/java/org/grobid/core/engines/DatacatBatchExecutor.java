@@ -0,0 +1,178 @@
+package org.grobid.core.engines;
+
+import org.grobid.core.utilities.DatacatMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * Process a batch of PDF files with a fixed pool of worker threads.
+ *
+ * Each worker thread creates its own state (typically a set of parsers) the first time it runs a task and keeps
+ * it for the whole batch, so that no parser instance is shared between two documents processed concurrently.
+ * The states which are AutoCloseable are closed by shutdownAndWait(), once the workers have stopped.
+ * Submission blocks when the queue of pending files is full, the memory used by the batch is then bounded
+ * by the number of workers and the queue size, and not by the number of files to be processed.
+ *
+ * @param <S> the per-worker state
+ */
+public class DatacatBatchExecutor<S> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatacatBatchExecutor.class);
+
+    /**
+     * A unit of work on a single PDF file.
+     */
+    public interface PdfTask<S> {
+        void process(S workerState, File pdfFile, int id) throws Exception;
+    }
+
+    private final int nbThreads;
+    private final ThreadPoolExecutor executor;
+    private final Semaphore slots;
+    private final ThreadLocal<S> workerState;
+
+    // states created by the workers, closed at the end of the batch
+    private final List<S> workerStates = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger nbSubmitted = new AtomicInteger(0);
+    private final AtomicInteger nbProcessed = new AtomicInteger(0);
+    private final AtomicInteger nbFailed = new AtomicInteger(0);
+    private final long startTime;
+
+    /**
+     * @param nbThreads          number of worker threads, values lower than 1 are set to 1
+     * @param queueSize          maximum number of files waiting for a worker
+     * @param workerStateFactory creates the state of a worker thread, called once per worker
+     */
+    public DatacatBatchExecutor(int nbThreads, int queueSize, Supplier<S> workerStateFactory) {
+        this.nbThreads = Math.max(1, nbThreads);
+        this.slots = new Semaphore(this.nbThreads + Math.max(0, queueSize));
+        this.workerState = ThreadLocal.withInitial(() -> {
+            S state = workerStateFactory.get();
+            workerStates.add(state);
+            return state;
+        });
+        this.executor = new ThreadPoolExecutor(this.nbThreads, this.nbThreads,
+            0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(), new WorkerThreadFactory());
+        this.startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Create an executor with a queue of twice the number of workers.
+     */
+    public DatacatBatchExecutor(int nbThreads, Supplier<S> workerStateFactory) {
+        this(nbThreads, 2 * Math.max(1, nbThreads), workerStateFactory);
+    }
+
+    /**
+     * Submit a PDF file to the pool, blocking while the queue of pending files is full.
+     * A failure on a file is logged and counted, it does not stop the batch.
+     */
+    public void submit(final File pdfFile, final int id, final PdfTask<S> task) throws InterruptedException {
+        slots.acquire();
+        nbSubmitted.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    task.process(workerState.get(), pdfFile, id);
+                    nbProcessed.incrementAndGet();
+                    DatacatMetrics.count(DatacatMetrics.DOCUMENTS);
+                } catch (final Throwable exp) {
+                    nbFailed.incrementAndGet();
+                    DatacatMetrics.count(DatacatMetrics.FAILED_DOCUMENTS);
+                    LOGGER.error("An error occurred while processing the following pdf: "
+                        + pdfFile.getPath(), exp);
+                } finally {
+                    slots.release();
+                }
+            });
+        } catch (RuntimeException e) {
+            slots.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Wait for all the submitted files to be processed, stop the workers, close their states and log a summary
+     * of the batch. When the wait is interrupted, the workers are interrupted and their states are closed
+     * as well.
+     */
+    public void shutdownAndWait() throws InterruptedException {
+        executor.shutdown();
+        try {
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                LOGGER.info((nbProcessed.get() + nbFailed.get()) + "/" + nbSubmitted.get() + " files processed...");
+            }
+        } finally {
+            if (!executor.isTerminated())
+                stopWorkers();
+            closeWorkerStates();
+        }
+        LOGGER.info(getSummary());
+        LOGGER.info("stage metrics: " + DatacatMetrics.getInstance().toJson());
+    }
+
+    private void stopWorkers() {
+        executor.shutdownNow();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES))
+                LOGGER.warn("The workers did not stop, their states are closed anyway");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void closeWorkerStates() {
+        for (S state : workerStates) {
+            if (state instanceof AutoCloseable) {
+                try {
+                    ((AutoCloseable) state).close();
+                } catch (Exception e) {
+                    LOGGER.warn("Cannot close the state of a worker", e);
+                }
+            }
+        }
+        workerStates.clear();
+    }
+
+    public String getSummary() {
+        long elapsed = System.currentTimeMillis() - startTime;
+        int done = nbProcessed.get() + nbFailed.get();
+        double rate = elapsed > 0 ? (done * 1000.0) / elapsed : 0.0;
+        return String.format("%d files submitted, %d processed, %d failed in %.1f s (%.2f files/s, %d threads)",
+            nbSubmitted.get(), nbProcessed.get(), nbFailed.get(), elapsed / 1000.0, rate, nbThreads);
+    }
+
+    public int getNbSubmitted() {
+        return nbSubmitted.get();
+    }
+
+    public int getNbProcessed() {
+        return nbProcessed.get();
+    }
+
+    public int getNbFailed() {
+        return nbFailed.get();
+    }
+
+    private static class WorkerThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "datacat-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package org.grobid.core.engines;
+
+import org.grobid.core.GrobidModels;
+import org.grobid.core.document.DatacatDocumentCache;
+import org.grobid.core.exceptions.GrobidException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Append-only journal of a batch run, written in the output directory, so that a batch interrupted by a crash
+ * or a preemption can be restarted without processing again the files already done.
+ *
+ * Every file gets a STARTED record when a worker takes it, then a DONE or FAILED record. A record holds the
+ * size, the modification time and the MD5 of the input file, and the version of the models (the MD5 of the
+ * datacat model files). When the journal is opened again, a file is skipped if its last record is DONE with
+ * the same model version and the same content: the same size and modification time, or, for a file touched
+ * since, the same size and MD5. The failed files, the files which were in progress at the time of the crash
+ * and the files modified since are processed again.
+ *
+ * The records are buffered and the journal is synced to the disk every SYNC_RECORDS records or SYNC_INTERVAL
+ * milliseconds, a crash can then lose the last records, whose files are simply processed again on restart.
+ * To process all the files again, the journal file can be deleted.
+ */
+public class DatacatBatchJournal implements Closeable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatacatBatchJournal.class);
+
+    public static final String STARTED = "STARTED";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+
+    private static final int SYNC_RECORDS = 64;
+    private static final long SYNC_INTERVAL = 5000L;
+
+    private static final int NB_FIELDS = 8;
+
+    private final File journalFile;
+    private final String modelVersion;
+    private final FileOutputStream out;
+    private final Writer writer;
+
+    // last record of every input file found in the journal when it was opened
+    private final Map<String, String[]> previousRecords = new HashMap<>();
+
+    private int nbPendingRecords = 0;
+    private long lastSync;
+
+    /**
+     * Open the journal of a batch command in an output directory, the existing records are read and new
+     * records are appended.
+     *
+     * @param outputDirectory the root output directory of the batch
+     * @param batchName       the name of the batch command, each command has its own journal
+     */
+    public DatacatBatchJournal(File outputDirectory, String batchName) {
+        this(outputDirectory, batchName, getModelVersion());
+    }
+
+    /**
+     * @param modelVersion the version of the models recorded with the files, see getModelVersion()
+     */
+    DatacatBatchJournal(File outputDirectory, String batchName, String modelVersion) {
+        this.journalFile = new File(outputDirectory, ".datacat-" + batchName + ".journal");
+        this.modelVersion = modelVersion;
+        try {
+            if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs())
+                throw new IOException("Cannot create the directory " + outputDirectory.getPath());
+            boolean truncated = false;
+            if (journalFile.exists())
+                truncated = readRecords();
+            this.out = new FileOutputStream(journalFile, true);
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+            // the new records must not be appended to a truncated last line
+            if (truncated)
+                writer.write('\n');
+        } catch (IOException e) {
+            throw new GrobidException("Cannot open the batch journal " + journalFile.getPath(), e);
+        }
+        this.lastSync = System.currentTimeMillis();
+        if (!previousRecords.isEmpty())
+            LOGGER.info("batch journal " + journalFile.getPath() + ": " + previousRecords.size() +
+                " files already recorded");
+    }
+
+    /**
+     * @return true if the journal does not end with a complete line
+     */
+    private boolean readRecords() throws IOException {
+        try (BufferedReader reader = new BufferedReader(
+            new InputStreamReader(new FileInputStream(journalFile), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split("\t", NB_FIELDS);
+                // the last line can be truncated by a crash
+                if (fields.length < NB_FIELDS)
+                    continue;
+                previousRecords.put(fields[7], fields);
+            }
+        }
+        try (RandomAccessFile file = new RandomAccessFile(journalFile, "r")) {
+            if (file.length() == 0)
+                return false;
+            file.seek(file.length() - 1);
+            return file.read() != '\n';
+        }
+    }
+
+    /**
+     * A file whose modification time has changed but not its content is recorded again as DONE with its new
+     * modification time, so that its MD5 is not computed again by the next runs.
+     *
+     * @param inputPath the path of the input file relative to the input directory
+     * @return true if the file has already been processed with the current models and has not been modified
+     */
+    public boolean isDone(String inputPath, File inputFile) {
+        String[] record = previousRecords.get(inputPath);
+        if (record == null ||
+            !DONE.equals(record[0]) ||
+            !modelVersion.equals(record[4]) ||
+            !String.valueOf(inputFile.length()).equals(record[1]))
+            return false;
+        if (String.valueOf(inputFile.lastModified()).equals(record[2]))
+            return true;
+        // touched since the last run, the content is compared
+        if ("-".equals(record[3]))
+            return false;
+        String md5 = DatacatDocumentCache.md5(inputFile);
+        if (!md5.equals(record[3]))
+            return false;
+        done(inputPath, inputFile, md5);
+        return true;
+    }
+
+    public void started(String inputPath, File inputFile, String md5) {
+        append(STARTED, inputPath, inputFile, md5, null);
+    }
+
+    public void done(String inputPath, File inputFile, String md5) {
+        append(DONE, inputPath, inputFile, md5, null);
+    }
+
+    public void failed(String inputPath, File inputFile, String md5, Throwable error) {
+        append(FAILED, inputPath, inputFile, md5, error);
+    }
+
+    private synchronized void append(String status, String inputPath, File inputFile, String md5, Throwable error) {
+        StringBuilder record = new StringBuilder(128);
+        record.append(status)
+            .append('\t').append(inputFile.length())
+            .append('\t').append(inputFile.lastModified())
+            .append('\t').append(md5 == null ? "-" : md5)
+            .append('\t').append(modelVersion)
+            .append('\t').append(System.currentTimeMillis())
+            .append('\t').append(error == null ? "-" : clean(String.valueOf(error)))
+            .append('\t').append(clean(inputPath))
+            .append('\n');
+        try {
+            writer.write(record.toString());
+            nbPendingRecords++;
+            long now = System.currentTimeMillis();
+            if (nbPendingRecords >= SYNC_RECORDS || now - lastSync >= SYNC_INTERVAL)
+                sync(now);
+        } catch (IOException e) {
+            // the journal only saves work on restart, a write error must not stop the batch
+            LOGGER.warn("Cannot write in the batch journal " + journalFile.getPath(), e);
+        }
+    }
+
+    private void sync(long now) throws IOException {
+        writer.flush();
+        out.getFD().sync();
+        nbPendingRecords = 0;
+        lastSync = now;
+    }
+
+    private static String clean(String value) {
+        return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            sync(System.currentTimeMillis());
+        } finally {
+            writer.close();
+        }
+    }
+
+    public File getJournalFile() {
+        return journalFile;
+    }
+
+    /**
+     * @return the MD5 of the MD5 of the datacat model files, "none" if no model file is found
+     */
+    static String getModelVersion() {
+        StringBuilder checksums = new StringBuilder();
+        for (GrobidModels model : new GrobidModels[]{GrobidModels.DATACAT_SEGMENTER,
+            GrobidModels.DATACAT_BODY_SEGMENTATION}) {
+            File modelFile = new File(model.getModelPath());
+            if (modelFile.isFile())
+                checksums.append(DatacatDocumentCache.md5(modelFile));
+        }
+        if (checksums.length() == 0)
+            return "none";
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            StringBuilder version = new StringBuilder(32);
+            for (byte b : digest.digest(checksums.toString().getBytes(StandardCharsets.UTF_8))) {
+                version.append(Character.forDigit((b >> 4) & 0xF, 16));
+                version.append(Character.forDigit(b & 0xF, 16));
+            }
+            return version.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new GrobidException("MD5 is not available", e);
+        }
+    }
+}
@@ -32,6 +32,7 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 
 import static org.apache.commons.lang3.StringUtils.*;
@@ -60,8 +61,12 @@ public class DatacatBodySegmentationParser extends AbstractParser {
 
     private Lexicon lexicon = Lexicon.getInstance();
 
+    // model loaded by the tagger, for the label cache
+    private final DatacatLabelCache.ModelVersion modelVersion;
+
     public DatacatBodySegmentationParser(EngineDatacatParsers parsers) {
         super(GrobidModels.DATACAT_BODY_SEGMENTATION);
+        modelVersion = DatacatLabelCache.getModelVersion(GrobidModels.DATACAT_BODY_SEGMENTATION);
         this.parsers = parsers;
         tmpPath = GrobidProperties.getTempPath();
     }
@@ -69,7 +74,7 @@ public class DatacatBodySegmentationParser extends AbstractParser {
     public Document processing(File inputPdf,
                                GrobidAnalysisConfig config) throws Exception {
         DocumentSource documentSource =
-            DocumentSource.fromPdf(inputPdf, config.getStartPage(), config.getEndPage(),
+            DatacatDocumentCache.getInstance().fromPdf(inputPdf, config.getStartPage(), config.getEndPage(),
                 config.getPdfAssetPath() != null, true, false);
         return processing(documentSource, config);
     }
@@ -78,7 +83,7 @@ public class DatacatBodySegmentationParser extends AbstractParser {
                                String md5Str,
                                GrobidAnalysisConfig config) throws Exception {
         DocumentSource documentSource =
-            DocumentSource.fromPdf(inputPdf, config.getStartPage(), config.getEndPage(),
+            DatacatDocumentCache.getInstance().fromPdf(inputPdf, config.getStartPage(), config.getEndPage(),
                 config.getPdfAssetPath() != null, true, false);
         documentSource.setMD5(md5Str);
         return processing(documentSource, config);
@@ -94,24 +99,7 @@ public class DatacatBodySegmentationParser extends AbstractParser {
         }
         try {
             Document doc = parsers.getDatacatSegmenterParser().processing(documentSource, config);
-            SortedSet<DocumentPiece> documentBodyParts = doc.getDocumentPart(DatacatLabels.BODY);
-            Pair<String, LayoutTokenization> featSeg = null;
-
-            featSeg = getBodyTextFeatured(doc, documentBodyParts);
-            String resultBody = null;
-            LayoutTokenization layoutTokenization = null;
-            if (featSeg != null && isNotBlank(featSeg.getLeft())) {
-                // if featSeg is null, it usually means that no body segment is found in the
-                // document segmentation
-                String bodytext = featSeg.getLeft(); // features of body tokens
-                layoutTokenization = featSeg.getRight();
-
-                // labeling the featured tokens of the body part
-                resultBody = label(bodytext);
-
-            } else {
-                LOGGER.debug("Fulltext model: The featured body is empty");
-            }
+            labelBody(doc);
             return doc;
         } catch (GrobidException e) {
             throw e;
@@ -120,8 +108,180 @@ public class DatacatBodySegmentationParser extends AbstractParser {
         }
     }
 
+    public List<EntryItem> processingEntries(File inputPdf,
+                                             GrobidAnalysisConfig config) throws Exception {
+        DocumentSource documentSource =
+            DatacatDocumentCache.getInstance().fromPdf(inputPdf, config.getStartPage(), config.getEndPage(),
+                config.getPdfAssetPath() != null, true, false);
+        return processingEntries(documentSource, config);
+    }
+
+    /**
+     * Extract the structures of the body of a catalogue (entries, titles and title descriptions) with their
+     * layout tokens and coordinates.
+     *
+     * @param documentSource document source
+     * @return the list of body items in reading order, empty if no body is found
+     */
+    public List<EntryItem> processingEntries(DocumentSource documentSource, GrobidAnalysisConfig config) {
+        if (tmpPath == null) {
+            throw new GrobidResourceException("Cannot process pdf file, because temp path is null.");
+        }
+        if (!tmpPath.exists()) {
+            throw new GrobidResourceException("Cannot process pdf file, because temp path '" +
+                tmpPath.getAbsolutePath() + "' does not exists.");
+        }
+        try {
+            Document doc = parsers.getDatacatSegmenterParser().processing(documentSource, config);
+            Pair<String, LayoutTokenization> labeledBody = labelBody(doc);
+            if (labeledBody == null) {
+                return new ArrayList<>();
+            }
+            return resultExtraction(labeledBody.getLeft(), labeledBody.getRight().getTokenization());
+        } catch (GrobidException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new GrobidException("An exception occurred while running Grobid.", e);
+        }
+    }
+
+    public int processingEntries(File inputPdf,
+                                 GrobidAnalysisConfig config,
+                                 Consumer<EntryItem> entryHandler) throws Exception {
+        DocumentSource documentSource =
+            DatacatDocumentCache.getInstance().fromPdf(inputPdf, config.getStartPage(), config.getEndPage(),
+                config.getPdfAssetPath() != null, true, false);
+        return processingEntries(documentSource, config, entryHandler);
+    }
+
+    /**
+     * Streaming variant of the body extraction: each entry, title or title description is handed to the
+     * handler as soon as its cluster is read, no list of items or TEI buffer is built for the whole catalogue.
+     * The items are the ones of resultExtraction().
+     *
+     * @param documentSource document source
+     * @param entryHandler   called for every body item, in reading order
+     * @return the number of items passed to the handler
+     */
+    public int processingEntries(DocumentSource documentSource,
+                                 GrobidAnalysisConfig config,
+                                 Consumer<EntryItem> entryHandler) {
+        if (tmpPath == null) {
+            throw new GrobidResourceException("Cannot process pdf file, because temp path is null.");
+        }
+        if (!tmpPath.exists()) {
+            throw new GrobidResourceException("Cannot process pdf file, because temp path '" +
+                tmpPath.getAbsolutePath() + "' does not exists.");
+        }
+        try {
+            Document doc = parsers.getDatacatSegmenterParser().processing(documentSource, config);
+            Pair<String, LayoutTokenization> labeledBody = labelBody(doc);
+            if (labeledBody == null) {
+                return 0;
+            }
+            return clusterEntries(labeledBody.getLeft(), labeledBody.getRight().getTokenization(), entryHandler);
+        } catch (GrobidException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new GrobidException("An exception occurred while running Grobid.", e);
+        }
+    }
+
+    /**
+     * Apply the body segmentation model to the body parts of a segmented document.
+     *
+     * @return the labeled result with the layout tokens of the body, or null if there is no body to label
+     */
+    private Pair<String, LayoutTokenization> labelBody(Document doc) {
+        SortedSet<DocumentPiece> documentBodyParts = doc.getDocumentPart(DatacatLabels.BODY);
+        Pair<String, LayoutTokenization> featSeg = getBodyTextFeatured(doc, documentBodyParts);
+        if (featSeg != null && isNotBlank(featSeg.getLeft())) {
+            // if featSeg is null, it usually means that no body segment is found in the
+            // document segmentation
+            String bodytext = featSeg.getLeft(); // features of body tokens
+            LayoutTokenization layoutTokenization = featSeg.getRight();
+
+            // labeling the featured tokens of the body part
+            String resultBody = label(bodytext);
+            return Pair.of(resultBody, layoutTokenization);
+        } else {
+            LOGGER.debug("Fulltext model: The featured body is empty");
+            return null;
+        }
+    }
+
+    /**
+     * Build the body items from the labeled result, see clusterEntries().
+     *
+     * @param result        labeled result of the body segmentation model
+     * @param tokenizations layout tokens of the body, as used for the features
+     * @return the entries, titles and title descriptions in reading order
+     */
+    public List<EntryItem> resultExtraction(String result, List<LayoutToken> tokenizations) {
+        List<EntryItem> entries = new ArrayList<>();
+        clusterEntries(result, tokenizations, entries::add);
+        return entries;
+    }
+
+    /**
+     * Build the body items from the labeled result in a single pass over the label sequence with
+     * TaggingTokenClusteror and pass each of them to the handler as soon as its cluster is read. The layout tokens
+     * of each item are the ones of the original tokenization, so that no re-tokenization of the text is needed.
+     * This is the construction of the body items used by all the output formats.
+     *
+     * @return the number of items passed to the handler
+     */
+    private int clusterEntries(String result, List<LayoutToken> tokenizations, Consumer<EntryItem> entryHandler) {
+        int nbEntries = 0;
+        TaggingTokenClusteror clusteror = new TaggingTokenClusteror(GrobidModels.DATACAT_BODY_SEGMENTATION,
+            result, tokenizations);
+        for (TaggingTokenCluster cluster : clusteror.cluster()) {
+            if (cluster == null) {
+                continue;
+            }
+            TaggingLabel clusterLabel = cluster.getTaggingLabel();
+            if (!isEntryLabel(clusterLabel.getLabel())) {
+                // <other> is not part of the structured result
+                continue;
+            }
+            EntryItem entryItem = new EntryItem(clusterLabel);
+            entryItem.addLayoutTokens(cluster.concatTokens());
+            entryHandler.accept(entryItem);
+            nbEntries++;
+        }
+        return nbEntries;
+    }
+
+    private static boolean isEntryLabel(String label) {
+        return DatacatLabels.ENTRY_LABEL.equals(label) ||
+            DatacatLabels.ENTRY_TITLE_LABEL.equals(label) ||
+            DatacatLabels.ENTRY_TITLEDESC_LABEL.equals(label);
+    }
+
+    /**
+     * Label a featured sequence, the result is taken from the label cache when the same sequence has already
+     * been labeled with the current model.
+     */
+    @Override
+    public String label(String data) {
+        return DatacatLabelCache.getInstance().label(modelVersion, data, features -> {
+            try (DatacatMetrics.Sample sample = DatacatMetrics.time(DatacatMetrics.LABELING,
+                GrobidModels.DATACAT_BODY_SEGMENTATION.getModelName())) {
+                return super.label(features);
+            }
+        });
+    }
+
     static public Pair<String, LayoutTokenization> getBodyTextFeatured(Document doc,
                                                                        SortedSet<DocumentPiece> documentBodyParts) {
+        try (DatacatMetrics.Sample sample = DatacatMetrics.time(DatacatMetrics.FEATURIZATION,
+            GrobidModels.DATACAT_BODY_SEGMENTATION.getModelName())) {
+            return bodyTextFeatured(doc, documentBodyParts);
+        }
+    }
+
+    static private Pair<String, LayoutTokenization> bodyTextFeatured(Document doc,
+                                                                     SortedSet<DocumentPiece> documentBodyParts) {
         if ((documentBodyParts == null) || (documentBodyParts.size() == 0)) {
             return null;
         }
@@ -157,6 +317,9 @@ public class DatacatBodySegmentationParser extends AbstractParser {
         List<LayoutToken> layoutTokens = new ArrayList<LayoutToken>();
         fulltextLength = getFullTextLength(doc, documentBodyParts, fulltextLength);
 
+        // graphics of the document indexed by page and vertical position
+        DatacatGraphicObjectIndex graphicIndex = new DatacatGraphicObjectIndex(doc);
+
         for (DocumentPiece docPiece : documentBodyParts) {
             DocumentPointer dp1 = docPiece.getLeft();
             DocumentPointer dp2 = docPiece.getRight();
@@ -200,7 +363,7 @@ public class DatacatBodySegmentationParser extends AbstractParser {
                     density = (double) localText.length() / (block.getHeight() * block.getWidth());
 
                 // check if we have a graphical object connected to the current block
-                List<GraphicObject> localImages = Document.getConnectedGraphics(block, doc);
+                List<GraphicObject> localImages = graphicIndex.getConnectedGraphics(block);
                 if (localImages != null) {
                     for (GraphicObject localImage : localImages) {
                         if (localImage.getType() == GraphicObjectType.BITMAP)
@@ -215,6 +378,9 @@ public class DatacatBodySegmentationParser extends AbstractParser {
                     continue;
                 }
 
+                // built on the first look-ahead in the block
+                LineEndIndex lineEndIndex = null;
+
                 int n = 0;// token position in current block
                 if (blockIndex == dp1.getBlockPtr()) {
                     n = dp1.getTokenBlockPos();
@@ -359,40 +525,14 @@ public class DatacatBodySegmentationParser extends AbstractParser {
                         features.blockStatus = "BLOCKEND";
                         endblock = true;
                     } else {
-                        // look ahead...
-                        boolean endline = false;
-
-                        int ii = 1;
-                        boolean endloop = false;
-                        while ((n + ii < tokens.size()) && (!endloop)) {
-                            LayoutToken tok = tokens.get(n + ii);
-                            if (tok != null) {
-                                String toto = tok.getText();
-                                if (toto != null) {
-                                    if (toto.equals("\n")) {
-                                        endline = true;
-                                        endloop = true;
-                                    } else {
-                                        if ((toto.length() != 0)
-                                            && (!(toto.startsWith("@IMAGE")))
-                                            && (!(toto.startsWith("@PAGE")))
-                                            && (!text.contains(".pbm"))
-                                            && (!text.contains(".svg"))
-                                            && (!text.contains(".png"))
-                                            && (!text.contains(".jpg"))) {
-                                            endloop = true;
-                                        }
-                                    }
-                                }
-                            }
-
-                            if (n + ii == tokens.size() - 1) {
-                                endblock = true;
-                                endline = true;
-                            }
-
-                            ii++;
-                        }
+                        // look ahead, the end of line and end of block are given by the index of the block
+                        if (lineEndIndex == null)
+                            lineEndIndex = new LineEndIndex(tokens);
+                        boolean imageToken = text.contains(".pbm") || text.contains(".svg") ||
+                            text.contains(".png") || text.contains(".jpg");
+                        boolean endline = lineEndIndex.endsLine(n, imageToken);
+                        if (lineEndIndex.endsBlock(n, imageToken))
+                            endblock = true;
 
                         if ((!endline) && !(newline)) {
                             features.lineStatus = "LINEIN";
@@ -504,7 +644,7 @@ public class DatacatBodySegmentationParser extends AbstractParser {
                             previousFeatures.blockStatus = "BLOCKEND";
                             previousFeatures.lineStatus = "LINEEND";
                         }
-                        fulltext.append(previousFeatures.printVector());
+                        previousFeatures.writeTo(fulltext);
                     }
 
                     n++;
@@ -517,7 +657,7 @@ public class DatacatBodySegmentationParser extends AbstractParser {
             }
         }
         if (previousFeatures != null) {
-            fulltext.append(previousFeatures.printVector());
+            previousFeatures.writeTo(fulltext);
 
         }
 
@@ -525,6 +665,64 @@ public class DatacatBodySegmentationParser extends AbstractParser {
             new LayoutTokenization(layoutTokens));
     }
 
+    /**
+     * Line and block ends of the tokens of a block, computed in a single backward pass.
+     *
+     * For each token position, it gives the next token which stops the look-ahead for the line status: the next
+     * end of line or the next token with content (empty, @IMAGE and @PAGE tokens are skipped), or only the next end
+     * of line for the tokens of an image file name. The line status of a token is then an O(1) lookup instead of a
+     * scan of the rest of the block.
+     */
+    static final class LineEndIndex {
+        private final int size;
+        // next end of line or token with content, -1 if none
+        private final int[] nextStop;
+        // next end of line, -1 if none
+        private final int[] nextNewline;
+
+        LineEndIndex(List<LayoutToken> tokens) {
+            size = tokens.size();
+            nextStop = new int[size];
+            nextNewline = new int[size];
+            int stop = -1;
+            int newline = -1;
+            for (int i = size - 1; i >= 0; i--) {
+                nextStop[i] = stop;
+                nextNewline[i] = newline;
+                LayoutToken token = tokens.get(i);
+                String text = (token == null) ? null : token.getText();
+                if (text == null)
+                    continue;
+                if (text.equals("\n")) {
+                    newline = i;
+                    stop = i;
+                } else if ((text.length() != 0) && !text.startsWith("@IMAGE") && !text.startsWith("@PAGE")) {
+                    stop = i;
+                }
+            }
+        }
+
+        private int lookAheadEnd(int n, boolean imageToken) {
+            int next = imageToken ? nextNewline[n] : nextStop[n];
+            return (next == -1) ? size - 1 : next;
+        }
+
+        /**
+         * @return true if the token at position n is the last one of its line
+         */
+        boolean endsLine(int n, boolean imageToken) {
+            int end = lookAheadEnd(n, imageToken);
+            return end == size - 1 || end == nextNewline[n];
+        }
+
+        /**
+         * @return true if only empty, image or page tokens follow the token at position n until the end of the block
+         */
+        boolean endsBlock(int n, boolean imageToken) {
+            return lookAheadEnd(n, imageToken) == size - 1;
+        }
+    }
+
     /**
      * Evaluate the length of the fulltext
      */
@@ -615,14 +813,14 @@ public class DatacatBodySegmentationParser extends AbstractParser {
                     inputFile.getAbsolutePath() + "' does not exists.");
             }
             String pdfFileName = inputFile.getName();
-            Writer writer = null;
 
-            documentSource = DocumentSource.fromPdf(inputFile, -1, -1, false, true, true);
+            documentSource = DatacatDocumentCache.getInstance().fromPdf(inputFile, -1, -1, false, true, true);
             Document doc = new Document(documentSource);
-            doc.addTokenizedDocument(GrobidAnalysisConfig.defaultInstance());
+            DatacatSegmenterParser.tokenize(doc, GrobidAnalysisConfig.defaultInstance());
 
-            // But first, call the medical-report-segmenter model to have high level segmentation
-            doc = parsers.getDatacatSegmenterParser().processing(documentSource,
+            // But first, call the datacat-segmenter model to have high level segmentation,
+            // on the document already tokenized above
+            doc = parsers.getDatacatSegmenterParser().processing(doc, documentSource,
                 GrobidAnalysisConfig.defaultInstance());
             List<LayoutToken> tokenizationsFull = doc.getTokenizations();
 
@@ -638,25 +836,22 @@ public class DatacatBodySegmentationParser extends AbstractParser {
 
                     // we write the full text untagged
                     File outputRawFile = new File(pathOutput + File.separator + pdfFileName.replace(".pdf", ".training.bodySegmentation.datacat.text"));
-                    writer = new OutputStreamWriter(new FileOutputStream(outputRawFile, false), "UTF-8");
-                    writer.write(bodytext + "\n");
-                    writer.close();
+                    try (Writer writer = DatacatArtifacts.openWriter(outputRawFile)) {
+                        writer.write(bodytext + "\n");
+                    }
 
                     String rese = label(bodytext);
-                    StringBuilder bufferFulltext = trainingExtraction(rese, tokenizationsBody);
 
-                    // write the TEI file to reflect the extract layout of the text as extracted from the pdf
+                    // write the TEI file to reflect the extract layout of the text as extracted from the pdf,
+                    // the fields are streamed to the file as the labels are read
                     File outputTEIFile = new File(pathOutput + File.separator + pdfFileName.replace(".pdf", ".training.bodySegmentation.datacat.text.tei.xml"));
-                    writer = new OutputStreamWriter(new FileOutputStream(outputTEIFile, false), "UTF-8");
-                    if (id == -1) {
-                        writer.write("<?xml version=\"1.0\" ?>\n<tei xml:space=\"preserve\">\n\t<teiHeader/>\n\t<text xml:lang=\"fr\">\n");
-                    } else {
-                        writer.write("<?xml version=\"1.0\" ?>\n<tei xml:space=\"preserve\">\n\t<teiHeader>\n\t\t<fileDesc xml:id=\"" + pdfFileName.replace(".pdf", "") +
-                            "\"/>\n\t</teiHeader>\n\t<text xml:lang=\"fr\">\n");
+                    try (DatacatMetrics.Sample sample = DatacatMetrics.time(DatacatMetrics.SERIALIZATION,
+                        GrobidModels.DATACAT_BODY_SEGMENTATION.getModelName());
+                         DatacatTeiWriter tei = new DatacatTeiWriter(outputTEIFile)) {
+                        tei.startTrainingDocument(id == -1 ? null : pdfFileName.replace(".pdf", ""), "fr");
+                        trainingExtraction(rese, tokenizationsBody, tei);
+                        tei.endTrainingDocument();
                     }
-                    writer.write(bufferFulltext.toString());
-                    writer.write("\n\t</text>\n</tei>\n");
-                    writer.close();
                 }
             }
 
@@ -667,7 +862,7 @@ public class DatacatBodySegmentationParser extends AbstractParser {
             throw new GrobidException("An exception occurred while running Grobid training" +
                 " data generation for full text.", e);
         } finally {
-            DocumentSource.close(documentSource, true, true, true);
+            DatacatDocumentCache.close(documentSource, true, true, true);
         }
 
     }
@@ -691,25 +886,24 @@ public class DatacatBodySegmentationParser extends AbstractParser {
                     inputFile.getAbsolutePath() + "' does not exists.");
             }
             String pdfFileName = inputFile.getName();
-            Writer writer = null;
 
             // 1. MEDICAL REPORT SEGMENTER MODEL
-            documentSource = DocumentSource.fromPdf(inputFile, -1, -1, false, true, true);
+            documentSource = DatacatDocumentCache.getInstance().fromPdf(inputFile, -1, -1, false, true, true);
             doc = new Document(documentSource);
-            doc.addTokenizedDocument(config);
+            DatacatSegmenterParser.tokenize(doc, config);
 
             if (doc.getBlocks() == null) {
                 throw new Exception("PDF parsing resulted in empty content");
             }
-            doc.produceStatistics();
 
             // Segmenter
             // path for blank body model
             File outputTEIFile = new File(pathOutput + File.separator + pdfFileName.replace(".pdf", ".training.bodySegmentation.datacat.text.blank.tei.xml"));
             File outputRawFile = new File(pathOutput + File.separator + pdfFileName.replace(".pdf", ".training.bodySegmentation.datacat.text"));
 
-            // first, call the datacat-segmenter model to have high level segmentation
-            doc = parsers.getDatacatSegmenterParser().processing(documentSource, GrobidAnalysisConfig.defaultInstance());
+            // first, call the datacat-segmenter model to have high level segmentation, the statistics of the
+            // document are produced there and the tokenization above is reused
+            doc = parsers.getDatacatSegmenterParser().processing(doc, documentSource, config);
 
             // Body
             SortedSet<DocumentPiece> documentBodyParts = doc.getDocumentPart(DatacatLabels.BODY);
@@ -720,29 +914,19 @@ public class DatacatBodySegmentationParser extends AbstractParser {
                     List<LayoutToken> tokenizationsBody = featSeg.getRight().getTokenization();
 
                     // we write the full text untagged
-                    writer = new OutputStreamWriter(new FileOutputStream(outputRawFile, false), "UTF-8");
-                    writer.write(bodytext + "\n");
-                    writer.close();
-
-                    StringBuilder bufferBody = new StringBuilder();
-
-                    // just write the text without any label
-                    for (LayoutToken token : tokenizationsBody) {
-                        bufferBody.append(TextUtilities.HTMLEncode(token.getText()));
+                    try (Writer writer = DatacatArtifacts.openWriter(outputRawFile)) {
+                        writer.write(bodytext + "\n");
                     }
 
-                    // write the TEI file to reflect the extract layout of the text as extracted from the pdf
-                    writer = new OutputStreamWriter(new FileOutputStream(outputTEIFile, false), "UTF-8");
-                    if (id == -1) {
-                        writer.write("<?xml version=\"1.0\" ?>\n<tei xml:space=\"preserve\">\n\t<teiHeader/>\n\t<text xml:lang=\"fr\">\n");
-                    } else {
-                        writer.write("<?xml version=\"1.0\" ?>\n<tei xml:space=\"preserve\">\n\t<teiHeader>\n\t\t<fileDesc xml:id=\"" + id +
-                            "\"/>\n\t</teiHeader>\n\t<text xml:lang=\"fr\">\n");
+                    // write the TEI file to reflect the extract layout of the text as extracted from the pdf,
+                    // just the text without any label
+                    try (DatacatTeiWriter tei = new DatacatTeiWriter(outputTEIFile)) {
+                        tei.startTrainingDocument(id == -1 ? null : String.valueOf(id), "fr");
+                        for (LayoutToken token : tokenizationsBody) {
+                            tei.characters(token.getText());
+                        }
+                        tei.endTrainingDocument();
                     }
-                    writer.write(bufferBody.toString());
-                    writer.write("\n\t</text>\n</tei>\n");
-                    writer.close();
-
                 }
             }
 
@@ -750,36 +934,35 @@ public class DatacatBodySegmentationParser extends AbstractParser {
             throw new GrobidException("An exception occurred while running Grobid training" +
                 " data generation for full text.", e);
         } finally {
-            DocumentSource.close(documentSource, true, true, true);
+            DatacatDocumentCache.close(documentSource, true, true, true);
         }
 
         return doc;
     }
 
     /**
-     * Extract results from a labelled full text in the training format without any string modification.
+     * Write the results of a labelled full text in the training format without any string modification. Each
+     * field is written as an element as soon as its label is read, the end of the lines of the PDF being marked
+     * with lb elements.
      *
      * @param result        result
      * @param tokenizations tokens
-     * @return extraction
+     * @param tei           the writer of the training TEI, the text element being open
      */
-    private StringBuilder trainingExtraction(String result,
-                                             List<LayoutToken> tokenizations) {
-        // this is the main buffer for the whole full text
-        StringBuilder buffer = new StringBuilder();
+    void trainingExtraction(String result,
+                            List<LayoutToken> tokenizations,
+                            DatacatTeiWriter tei) {
         try {
             StringTokenizer st = new StringTokenizer(result, "\n");
             String s1 = null;
             String s2 = null;
             String lastTag = null;
+            // element of the field currently written, null if no field is open
+            String openElement = null;
 
             // current token position
             int p = 0;
             boolean start = true;
-            boolean openFigure = false;
-            boolean headFigure = false;
-            boolean descFigure = false;
-            boolean tableBlock = false;
 
             while (st.hasMoreTokens()) {
                 boolean addSpace = false;
@@ -789,7 +972,6 @@ public class DatacatBodySegmentationParser extends AbstractParser {
                     continue;
                 }
                 StringTokenizer stt = new StringTokenizer(tok, " \t");
-                List<String> localFeatures = new ArrayList<String>();
                 int i = 0;
 
                 boolean newLine = false;
@@ -797,7 +979,7 @@ public class DatacatBodySegmentationParser extends AbstractParser {
                 while (stt.hasMoreTokens()) {
                     String s = stt.nextToken().trim();
                     if (i == 0) {
-                        s2 = TextUtilities.HTMLEncode(s); // lexical token
+                        s2 = s; // lexical token
                         int p0 = p;
                         boolean strop = false;
                         while ((!strop) && (p < tokenizations.size())) {
@@ -825,154 +1007,75 @@ public class DatacatBodySegmentationParser extends AbstractParser {
                     } else {
                         if (s.equals("LINESTART"))
                             newLine = true;
-                        localFeatures.add(s);
                     }
                     i++;
                 }
 
                 if (newLine && !start) {
-                    buffer.append("<lb/>");
+                    tei.emptyElement("lb");
                 }
 
-                String lastTag0 = null;
-                if (lastTag != null) {
-                    if (lastTag.startsWith("I-")) {
-                        lastTag0 = lastTag.substring(2, lastTag.length());
-                    } else {
-                        lastTag0 = lastTag;
-                    }
-                }
-                String currentTag0 = null;
-                if (s1 != null) {
-                    if (s1.startsWith("I-")) {
-                        currentTag0 = s1.substring(2, s1.length());
-                    } else {
-                        currentTag0 = s1;
-                    }
-                }
+                String lastTag0 = removeBeginPrefix(lastTag);
+                String currentTag0 = removeBeginPrefix(s1);
 
-                boolean closeParagraph = false;
-                if (lastTag != null) {
-                    closeParagraph = testClosingTag(buffer, currentTag0, lastTag0, s1);
+                // we close the current field when the label changes
+                if (openElement != null && !currentTag0.equals(lastTag0)) {
+                    tei.endElement();
+                    tei.whitespace("\n\n");
+                    openElement = null;
                 }
 
-                boolean output;
-                //TODO: write begin end field
-                output = writeField(buffer, s1, lastTag0, s2, "<other>",
-                    "<note type=\"other\">", addSpace, 3, false);
-
-                if (!output) {
-                    output = writeField(buffer, s1, lastTag0, s2, "<titledesc>",
-                        "<titledesc>", addSpace, 3, false);
-                }
-                if (!output) {
-                    output = writeField(buffer, s1, lastTag0, s2, "<entry>", "<entry>",
-                        addSpace, 3, false);
-                }
-                if (!output) {
-                    output = writeField(buffer, s1, lastTag0, s2, "<title>",
-                        "<title>", addSpace, 3, false);
+                String element = getTrainingElement(currentTag0);
+                if (element != null) {
+                    if (openElement == null) {
+                        tei.whitespace("\t\t\t");
+                        tei.startElement(element);
+                        if (element.equals("note"))
+                            tei.attribute("type", "other");
+                        openElement = element;
+                    } else if (addSpace) {
+                        tei.characters(" ");
+                    }
+                    tei.characters(s2);
                 }
 
                 lastTag = s1;
-
-                if (!st.hasMoreTokens()) {
-                    if (lastTag != null) {
-                        testClosingTag(buffer, "", currentTag0, s1);
-                    }
-                }
-                if (start) {
-                    start = false;
-                }
+                start = false;
             }
 
-            return buffer;
+            if (openElement != null) {
+                tei.endElement();
+                tei.whitespace("\n\n");
+            }
         } catch (Exception e) {
-            e.printStackTrace();
             throw new GrobidException("An exception occurred while running grobid-medical-report.", e);
         }
     }
 
-    /**
-     * @param buffer   buffer
-     * @param s1
-     * @param lastTag0
-     * @param s2
-     * @param field
-     * @param outField
-     * @param addSpace
-     * @param nbIndent
-     * @return
-     */
-    public static boolean writeField(StringBuilder buffer,
-                                     String s1,
-                                     String lastTag0,
-                                     String s2,
-                                     String field,
-                                     String outField,
-                                     boolean addSpace,
-                                     int nbIndent,
-                                     boolean generateIDs) {
-        boolean result = false;
-        if (s1 == null) {
-            return result;
-        }
-        if ((s1.equals(field)) || (s1.equals("I-" + field))) {
-            result = true;
-            if (s1.equals(lastTag0) || s1.equals("I-" + lastTag0)) {
-                if (addSpace)
-                    buffer.append(" ").append(s2);
-                else
-                    buffer.append(s2);
-            } else if (lastTag0 == null) {
-                for (int i = 0; i < nbIndent; i++) {
-                    buffer.append("\t");
-                }
-                buffer.append(outField).append(s2);
-            } else {
-                if (addSpace)
-                    buffer.append(" ").append(s2);
-                else
-                    buffer.append(s2);
-            }
-        }
-        return result;
+    private static String removeBeginPrefix(String tag) {
+        if (tag != null && tag.startsWith("I-"))
+            return tag.substring(2);
+        return tag;
     }
 
     /**
-     * @param buffer
-     * @param currentTag0
-     * @param lastTag0
-     * @param currentTag
-     * @return
+     * @return the element of the training TEI for a label of the model, null if the label has no element
      */
-    private static boolean testClosingTag(StringBuilder buffer,
-                                          String currentTag0,
-                                          String lastTag0,
-                                          String currentTag) {
-        boolean res = false;
-
-        if (!currentTag0.equals(lastTag0)) {
-            /*if (currentTag0.equals("<citation_marker>") || currentTag0.equals("<figure_marker>")) {
-                return res;
-            }*/
-
-            res = false;
-            // we close the current tag
-            if (lastTag0.equals("<entry>")) {
-                buffer.append("</entry>\n\n");
-                res = true;
-            }
-            else if (lastTag0.equals("<title>")) {
-                buffer.append("</title>\n\n");
-                res = true;
-            }
-            else if (lastTag0.equals("<titledesc>")) {
-                buffer.append("</titledesc>\n\n");
-                res = true;
-            }
+    private static String getTrainingElement(String label) {
+        if (label == null)
+            return null;
+        switch (label) {
+            case "<other>":
+                return "note";
+            case "<titledesc>":
+                return "titledesc";
+            case "<entry>":
+                return "entry";
+            case "<title>":
+                return "title";
+            default:
+                return null;
         }
-        return res;
     }
 
     @Override
@@ -0,0 +1,285 @@
+package org.grobid.core.engines;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.grobid.core.GrobidModel;
+import org.grobid.core.document.DatacatDocumentCache;
+import org.grobid.core.engines.tagging.GenericTagger;
+import org.grobid.core.engines.tagging.TaggerFactory;
+import org.grobid.core.exceptions.GrobidException;
+import org.grobid.core.exceptions.GrobidResourceException;
+import org.grobid.core.utilities.DatacatMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Persistent cache of the labeling results of the datacat models.
+ *
+ * An entry maps a featured sequence to the output of the tagger. The key is the SHA-1 of the featured sequence,
+ * stored under the checksum of the model loaded by the tagger: the same sequence labeled again with the same
+ * model is read from the cache instead of running the tagger. The hash of the featured sequence changes
+ * whenever the document or the feature extraction changes, so no version has to be maintained for the
+ * featurizers, and training a model changes its checksum, so that the entries of the previous model are not
+ * used anymore.
+ *
+ * The checksum is attached to the tagger (see ModelVersion): it is the checksum of the model file as it was
+ * when the tagger loaded it, a model file replaced while the tagger is running disables the cache for this
+ * tagger instead of storing the labels of the old model under the checksum of the new one. The entries of the
+ * other checksums are kept, several processes with different models can share the cache directory. The total
+ * size of the cache is capped, the least recently used entries are evicted first.
+ *
+ * The cache is disabled until it is configured with a directory, label() then simply calls the tagger.
+ */
+public class DatacatLabelCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatacatLabelCache.class);
+
+    private static final String ENTRY_EXTENSION = ".gz";
+    private static final String TMP_EXTENSION = ".tmp";
+
+    private static volatile DatacatLabelCache instance = new DatacatLabelCache(null, 0L);
+
+    // tagger -> version of the model it has loaded, shared by all the parsers using the same tagger
+    private static final Map<GenericTagger, ModelVersion> MODEL_VERSIONS = new WeakHashMap<>();
+
+    private final File cacheDirectory;
+    private final long maxSize;
+
+    // path of an entry relative to the cache directory -> entry size in bytes, in access order for the LRU eviction
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalSize = 0L;
+
+    /**
+     * The model loaded by a tagger, identified by the size and the date of the model file when the tagger was
+     * created. The checksum of the file is computed at the first use of the cache, and only if the file is
+     * still the one loaded by the tagger.
+     */
+    public static final class ModelVersion {
+        private final GrobidModel model;
+        private final File modelFile;
+        private final long length;
+        private final long lastModified;
+
+        private String checksum = null;
+        private boolean resolved = false;
+
+        private ModelVersion(GrobidModel model) {
+            this.model = model;
+            this.modelFile = new File(model.getModelPath());
+            this.length = modelFile.length();
+            this.lastModified = modelFile.lastModified();
+        }
+
+        public GrobidModel getModel() {
+            return model;
+        }
+
+        /**
+         * @return the checksum of the model loaded by the tagger, null if the model is not a file or if the
+         * file has changed since it was loaded (the cache is then not used)
+         */
+        public synchronized String getChecksum() {
+            if (resolved)
+                return checksum;
+            resolved = true;
+            if (!modelFile.isFile())
+                return null;
+            if (isModified()) {
+                LOGGER.warn("Model " + model.getModelName() + " has changed since it was loaded, " +
+                    "the label cache is disabled for this model until the process is restarted");
+                return null;
+            }
+            String md5 = DatacatDocumentCache.md5(modelFile);
+            // the file could have been replaced while computing its checksum
+            if (!isModified())
+                checksum = md5;
+            return checksum;
+        }
+
+        private boolean isModified() {
+            return modelFile.length() != length || modelFile.lastModified() != lastModified;
+        }
+    }
+
+    /**
+     * @param cacheDirectory directory of the cache, null for a disabled cache
+     * @param maxSize        maximum size of the cache in bytes
+     */
+    public DatacatLabelCache(File cacheDirectory, long maxSize) {
+        this.cacheDirectory = cacheDirectory;
+        this.maxSize = maxSize;
+        if (cacheDirectory != null)
+            loadEntries();
+    }
+
+    public static DatacatLabelCache getInstance() {
+        return instance;
+    }
+
+    /**
+     * Enable the shared cache in the given directory.
+     */
+    public static void configure(File cacheDirectory, long maxSize) {
+        try {
+            instance = new DatacatLabelCache(cacheDirectory, maxSize);
+        } catch (GrobidResourceException e) {
+            LOGGER.warn("Cannot open the label cache " + cacheDirectory.getAbsolutePath() +
+                ", the label cache is disabled", e);
+            return;
+        }
+        LOGGER.info("label cache enabled in " + cacheDirectory.getAbsolutePath() + ", " +
+            instance.entries.size() + " entries, " + (instance.totalSize / (1024 * 1024)) + " MB");
+    }
+
+    /**
+     * To be called when a parser is created, right after the creation of its tagger.
+     *
+     * @return the version of the model loaded by the tagger of the model, the same for all the parsers sharing
+     * this tagger
+     */
+    public static ModelVersion getModelVersion(GrobidModel model) {
+        GenericTagger tagger = TaggerFactory.getTagger(model);
+        synchronized (MODEL_VERSIONS) {
+            return MODEL_VERSIONS.computeIfAbsent(tagger, t -> new ModelVersion(model));
+        }
+    }
+
+    public boolean isEnabled() {
+        return cacheDirectory != null;
+    }
+
+    /**
+     * @param modelVersion the model applied by the labeler
+     * @param features     the featured sequence
+     * @param labeler      the actual labeling, called when the sequence is not in the cache
+     * @return the labeled sequence
+     */
+    public String label(ModelVersion modelVersion, String features, Function<String, String> labeler) {
+        if (!isEnabled() || features == null)
+            return labeler.apply(features);
+        String checksum = modelVersion.getChecksum();
+        if (checksum == null)
+            return labeler.apply(features);
+
+        String modelName = modelVersion.getModel().getModelName();
+        String hash = sha1(features);
+        String key = modelName + "/" + checksum + "/" + hash.substring(0, 2) + "/" + hash + ENTRY_EXTENSION;
+        File entry = new File(cacheDirectory, key);
+        boolean cached;
+        synchronized (this) {
+            cached = entries.get(key) != null;
+        }
+        if (cached) {
+            try (InputStream in = new GZIPInputStream(new FileInputStream(entry))) {
+                String result = IOUtils.toString(in, StandardCharsets.UTF_8);
+                entry.setLastModified(System.currentTimeMillis());
+                DatacatMetrics.count(DatacatMetrics.LABEL_CACHE_HITS, modelName);
+                return result;
+            } catch (IOException e) {
+                LOGGER.warn("Cannot read the cached labels " + entry.getPath(), e);
+                remove(key);
+            }
+        }
+
+        DatacatMetrics.count(DatacatMetrics.LABEL_CACHE_MISSES, modelName);
+        String result = labeler.apply(features);
+        if (result != null)
+            store(key, entry, result);
+        return result;
+    }
+
+    private void store(String key, File entry, String result) {
+        File tmpFile = new File(entry.getPath() + TMP_EXTENSION + Thread.currentThread().getId());
+        try {
+            entry.getParentFile().mkdirs();
+            try (OutputStream out = new GZIPOutputStream(new FileOutputStream(tmpFile))) {
+                out.write(result.getBytes(StandardCharsets.UTF_8));
+            }
+            long size = tmpFile.length();
+            Files.move(tmpFile.toPath(), entry.toPath(), StandardCopyOption.ATOMIC_MOVE,
+                StandardCopyOption.REPLACE_EXISTING);
+            synchronized (this) {
+                Long previous = entries.put(key, size);
+                if (previous != null)
+                    totalSize -= previous;
+                totalSize += size;
+                evict();
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Cannot store the labels in " + entry.getPath(), e);
+            FileUtils.deleteQuietly(tmpFile);
+        }
+    }
+
+    private synchronized void remove(String key) {
+        Long size = entries.remove(key);
+        if (size != null)
+            totalSize -= size;
+        FileUtils.deleteQuietly(new File(cacheDirectory, key));
+    }
+
+    // remove the least recently used entries until the cache fits in its maximum size
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> iterator = entries.entrySet().iterator();
+        while (totalSize > maxSize && iterator.hasNext()) {
+            Map.Entry<String, Long> eldest = iterator.next();
+            FileUtils.deleteQuietly(new File(cacheDirectory, eldest.getKey()));
+            totalSize -= eldest.getValue();
+            iterator.remove();
+        }
+    }
+
+    // rebuild the index of the entries, the last modification date of an entry being its last access
+    private void loadEntries() {
+        if (!cacheDirectory.exists() && !cacheDirectory.mkdirs()) {
+            throw new GrobidResourceException("Cannot create the cache directory " + cacheDirectory.getAbsolutePath());
+        }
+        Path root = cacheDirectory.toPath();
+        List<File> files;
+        try (Stream<Path> paths = Files.walk(root)) {
+            files = paths.filter(Files::isRegularFile).map(Path::toFile).collect(Collectors.toList());
+        } catch (IOException e) {
+            throw new GrobidResourceException("Cannot read the cache directory " + cacheDirectory.getAbsolutePath(), e);
+        }
+        files.sort(Comparator.comparingLong(File::lastModified));
+        for (File file : files) {
+            if (!file.getName().endsWith(ENTRY_EXTENSION)) {
+                // incomplete entry
+                FileUtils.deleteQuietly(file);
+                continue;
+            }
+            String key = root.relativize(file.toPath()).toString().replace(File.separatorChar, '/');
+            long size = file.length();
+            entries.put(key, size);
+            totalSize += size;
+        }
+        evict();
+    }
+
+    private static String sha1(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(40);
+            for (byte b : hash) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16));
+                hex.append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            throw new GrobidException("SHA-1 is not available", e);
+        }
+    }
+}
@@ -62,7 +62,7 @@ public class DatacatSegmenterParser extends AbstractParser {
 
     private static final Logger LOGGER = LoggerFactory.getLogger(DatacatSegmenterParser.class);
 
-    private LanguageUtilities languageUtilities = LanguageUtilities.getInstance();
+    private DatacatLanguageSampler languageSampler = new DatacatLanguageSampler();
 
     // default bins for relative position
     private static final int NBBINS_POSITION = 12;
@@ -80,8 +80,12 @@ public class DatacatSegmenterParser extends AbstractParser {
 
     private File tmpPath = null;
 
+    // model loaded by the tagger, for the label cache
+    private final DatacatLabelCache.ModelVersion modelVersion;
+
     public DatacatSegmenterParser() {
         super(GrobidModels.DATACAT_SEGMENTER);
+        modelVersion = DatacatLabelCache.getModelVersion(GrobidModels.DATACAT_SEGMENTER);
     }
 
     /*
@@ -106,17 +110,8 @@ public class DatacatSegmenterParser extends AbstractParser {
             Document doc = new Document(documentSource);
             if (config.getAnalyzer() != null)
                 doc.setAnalyzer(config.getAnalyzer());
-            doc.addTokenizedDocument(config);
-            doc = prepareDocument(doc);
-
-            // if assets is true, the images are still there under directory pathXML+"_data"
-            // we copy them to the assetPath directory
-
-            File assetFile = config.getPdfAssetPath();
-            if (assetFile != null) {
-                dealWithImages(documentSource, doc, assetFile, config);
-            }
-            return doc;
+            tokenize(doc, config);
+            return processing(doc, documentSource, config);
         } finally {
             // keep it clean when leaving...
             /*if (config.getPdfAssetPath() == null) {
@@ -124,11 +119,44 @@ public class DatacatSegmenterParser extends AbstractParser {
                 DocumentSource.close(documentSource, false, true, true);
             } else*/ {
                 // remove the pdfalto tmp files, including the sub-directories
-                DocumentSource.close(documentSource, true, true, true);
+                DatacatDocumentCache.close(documentSource, true, true, true);
             }
         }
     }
 
+    /**
+     * Parse the pdfalto output of a document and tokenize it, the duration is recorded as the tokenization
+     * stage of the metrics. All the tokenizations of the datacat parsers go through this method.
+     */
+    static void tokenize(Document doc, GrobidAnalysisConfig config) {
+        try (DatacatMetrics.Sample sample = DatacatMetrics.time(DatacatMetrics.TOKENIZATION)) {
+            doc.addTokenizedDocument(config);
+        }
+    }
+
+    /**
+     * Segment a document which has already been parsed by pdfalto and tokenized, so that the same tokenization
+     * can be shared with the models applied after the segmentation. The document source is not closed,
+     * this remains the responsibility of the caller.
+     *
+     * @param doc            a document which has already been tokenized (see tokenize())
+     * @param documentSource the source of the document, used to retrieve the pdfalto assets
+     * @return Document object with segmentation information
+     */
+    public Document processing(Document doc, DocumentSource documentSource, GrobidAnalysisConfig config) {
+        doc = prepareDocument(doc);
+
+        // if assets is true, the images are still there under directory pathXML+"_data"
+        // we copy them to the assetPath directory
+        File assetFile = config.getPdfAssetPath();
+        if (assetFile != null) {
+            try (DatacatMetrics.Sample sample = DatacatMetrics.time(DatacatMetrics.ASSETS)) {
+                dealWithImages(documentSource, doc, assetFile, config);
+            }
+        }
+        return doc;
+    }
+
     public Document processing(String text) {
         Document doc = Document.createFromText(text);
         return prepareDocument(doc);
@@ -142,7 +170,9 @@ public class DatacatSegmenterParser extends AbstractParser {
                     GrobidExceptionStatus.TOO_MANY_TOKENS);
         }
 
-        doc.produceStatistics();
+        try (DatacatMetrics.Sample sample = DatacatMetrics.time(DatacatMetrics.STATISTICS)) {
+            doc.produceStatistics();
+        }
         String content = getAllLinesFeatured(doc);
         if (isNotEmpty(trim(content))) {
             String labelledResult = label(content);
@@ -240,6 +270,20 @@ public class DatacatSegmenterParser extends AbstractParser {
         }
     }
 
+    /**
+     * Label a featured sequence, the result is taken from the label cache when the same sequence has already
+     * been labeled with the current model.
+     */
+    @Override
+    public String label(String data) {
+        return DatacatLabelCache.getInstance().label(modelVersion, data, features -> {
+            try (DatacatMetrics.Sample sample =
+                     DatacatMetrics.time(DatacatMetrics.LABELING, GrobidModels.DATACAT_SEGMENTER.getModelName())) {
+                return super.label(features);
+            }
+        });
+    }
+
     /**
      * Addition of the features at line level for the complete document.
      * <p/>
@@ -251,6 +295,13 @@ public class DatacatSegmenterParser extends AbstractParser {
      * Regarding layout features: font, size and style are the one associated to the first token of the block.
      */
     public String getAllLinesFeatured(Document doc) {
+        try (DatacatMetrics.Sample sample =
+                 DatacatMetrics.time(DatacatMetrics.FEATURIZATION, GrobidModels.DATACAT_SEGMENTER.getModelName())) {
+            return allLinesFeatured(doc);
+        }
+    }
+
+    private String allLinesFeatured(Document doc) {
 
         List<Block> blocks = doc.getBlocks();
         if ((blocks == null) || blocks.size() == 0) {
@@ -278,9 +329,10 @@ public class DatacatSegmenterParser extends AbstractParser {
                         Block block = page.getBlocks().get(blockIndex);
                         String localText = block.getText();
                         if ((localText != null) && (localText.length() > 0)) {
-                            String[] lines = localText.split("[\\n\\r]");
-                            if (lines.length > 0) {
-                                String line = lines[0];
+                            // only the first line is needed, no need to split the whole block
+                            int lineEnd = indexOfLineBreak(localText, 0);
+                            String line = (lineEnd == -1) ? localText : localText.substring(0, lineEnd);
+                            if (line.length() > 0) {
                                 String pattern = featureFactory.getPattern(line);
                                 if (pattern.length() > 8) {
                                     Integer nb = patterns.get(pattern);
@@ -304,6 +356,70 @@ public class DatacatSegmenterParser extends AbstractParser {
         return featuresAsString;
     }
 
+    /**
+     * @return the index of the first \n or \r in text from the position start, -1 if none
+     */
+    private static int indexOfLineBreak(String text, int start) {
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\n' || c == '\r')
+                return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Split a block text into lines in a single pass, with the same result as text.split("[\\n\\r]")
+     * (trailing empty lines are removed) but filling a reusable list.
+     */
+    static void splitLines(String text, List<String> lines) {
+        lines.clear();
+        int start = 0;
+        int lineEnd = indexOfLineBreak(text, 0);
+        if (lineEnd == -1) {
+            lines.add(text);
+            return;
+        }
+        while (lineEnd != -1) {
+            lines.add(text.substring(start, lineEnd));
+            start = lineEnd + 1;
+            lineEnd = indexOfLineBreak(text, start);
+        }
+        lines.add(text.substring(start));
+        int last = lines.size() - 1;
+        while (last >= 0 && lines.get(last).length() == 0) {
+            lines.remove(last);
+            last--;
+        }
+    }
+
+    private static boolean isLineTokenDelimiter(char c) {
+        return c == ' ' || c == '\t' || c == '\f' || c == '\u00A0';
+    }
+
+    /**
+     * Return the n-th token of a line (n=0 is the first one), with the same delimiters as the
+     * StringTokenizer previously used for the features: space, tab, form feed and non-breaking space.
+     */
+    private static String lineToken(String line, int n) {
+        int i = 0;
+        int length = line.length();
+        int current = 0;
+        while (i < length) {
+            while (i < length && isLineTokenDelimiter(line.charAt(i)))
+                i++;
+            if (i == length)
+                return null;
+            int start = i;
+            while (i < length && !isLineTokenDelimiter(line.charAt(i)))
+                i++;
+            if (current == n)
+                return line.substring(start, i);
+            current++;
+        }
+        return null;
+    }
+
     private String getFeatureVectorsLinesAsString(Document doc, Map<String, Integer> patterns,
                                                   Map<String, Boolean> firstTimePattern) {
         StringBuilder segmentationFeatures = new StringBuilder();
@@ -319,9 +435,21 @@ public class DatacatSegmenterParser extends AbstractParser {
         int pageLength = 0; // length of the current page
         double pageHeight = 0.0;
 
-        // vector for features
+        // vector for features, the two instances are reused alternatively for the current and the previous line
         FeaturesVectorDatacatSegmenter features;
         FeaturesVectorDatacatSegmenter previousFeatures = null;
+        FeaturesVectorDatacatSegmenter featuresA = new FeaturesVectorDatacatSegmenter();
+        FeaturesVectorDatacatSegmenter featuresB = new FeaturesVectorDatacatSegmenter();
+
+        // lines of the current block and matchers, reused for all the lines of the document
+        List<String> lines = new ArrayList<>();
+        Matcher digitMatcher = featureFactory.isDigit.matcher("");
+        Matcher yearMatcher = featureFactory.year.matcher("");
+        Matcher emailMatcher = featureFactory.email.matcher("");
+        Matcher httpMatcher = featureFactory.http.matcher("");
+
+        // graphics of the document indexed by page and vertical position
+        DatacatGraphicObjectIndex graphicIndex = new DatacatGraphicObjectIndex(doc);
 
         for (Page page : doc.getPages()) {
             pageHeight = page.getHeight();
@@ -356,7 +484,7 @@ public class DatacatSegmenterParser extends AbstractParser {
                 }
 
                 // check if we have a graphical object connected to the current block
-                List<GraphicObject> localImages = Document.getConnectedGraphics(block, doc);
+                List<GraphicObject> localImages = graphicIndex.getConnectedGraphics(block);
                 if (localImages != null) {
                     for(GraphicObject localImage : localImages) {
                         if (localImage.getType() == GraphicObjectType.BITMAP)
@@ -390,19 +518,20 @@ public class DatacatSegmenterParser extends AbstractParser {
                 if (pageBoundingBox == null || (!pageBoundingBox.contains(blockBoundingBox) && !pageBoundingBox.intersect(blockBoundingBox)))
                     inPageMainArea = false;
 
-                String[] lines = localText.split("[\\n\\r]");
+                splitLines(localText, lines);
+                int nbLines = lines.size();
                 // set the max length of the lines in the block, in number of characters
                 int maxLineLength = 0;
-                for(int p=0; p<lines.length; p++) {
-                    if (lines[p].length() > maxLineLength)
-                        maxLineLength = lines[p].length();
+                for(int p=0; p<nbLines; p++) {
+                    if (lines.get(p).length() > maxLineLength)
+                        maxLineLength = lines.get(p).length();
                 }
                 List<LayoutToken> tokens = block.getTokens();
                 if ((tokens == null) || (tokens.size() == 0)) {
                     continue;
                 }
-                for (int li = 0; li < lines.length; li++) {
-                    String line = lines[li];
+                for (int li = 0; li < nbLines; li++) {
+                    String line = lines.get(li);
 
                     // for the layout information of the block, we take simply the first layout token
                     LayoutToken token = null;
@@ -411,7 +540,8 @@ public class DatacatSegmenterParser extends AbstractParser {
 
                     double coordinateLineY = token.getY();
 
-                    features = new FeaturesVectorDatacatSegmenter();
+                    features = (previousFeatures == featuresA) ? featuresB : featuresA;
+                    features.reset();
                     features.token = token;
                     features.line = line;
 
@@ -431,20 +561,14 @@ public class DatacatSegmenterParser extends AbstractParser {
 
                     // we consider the first token of the line as usual lexical CRF token
                     // and the second token of the line as feature
-                    StringTokenizer st2 = new StringTokenizer(line, " \t\f\u00A0");
                     // alternatively, use a grobid analyser
-                    String text = null;
-                    String text2 = null;
-                    if (st2.hasMoreTokens())
-                        text = st2.nextToken();
-                    if (st2.hasMoreTokens())
-                        text2 = st2.nextToken();
-
+                    String text = lineToken(line, 0);
                     if (text == null)
                         continue;
+                    String text2 = lineToken(line, 1);
 
-                    // final sanitisation and filtering
-                    text = text.replaceAll("[ \n\r]", "");
+                    // final sanitisation and filtering, the token cannot contain space or end of line
+                    // at this stage
                     text = text.trim();
 
                     if ( (text.length() == 0) ||
@@ -475,7 +599,7 @@ public class DatacatSegmenterParser extends AbstractParser {
                     if ((li == 0) ||
                         ((previousFeatures != null) && previousFeatures.blockStatus.equals("BLOCKEND"))) {
                         features.blockStatus = "BLOCKSTART";
-                    } else if (li == lines.length - 1) {
+                    } else if (li == nbLines - 1) {
                         features.blockStatus = "BLOCKEND";
                         //endblock = true;
                     } else if (features.blockStatus == null) {
@@ -522,23 +646,19 @@ public class DatacatSegmenterParser extends AbstractParser {
                         features.month = true;
                     }
 
-                    Matcher m = featureFactory.isDigit.matcher(text);
-                    if (m.find()) {
+                    if (digitMatcher.reset(text).find()) {
                         features.digit = "ALLDIGIT";
                     }
 
-                    Matcher m2 = featureFactory.year.matcher(text);
-                    if (m2.find()) {
+                    if (yearMatcher.reset(text).find()) {
                         features.year = true;
                     }
 
-                    Matcher m3 = featureFactory.email.matcher(text);
-                    if (m3.find()) {
+                    if (emailMatcher.reset(text).find()) {
                         features.email = true;
                     }
 
-                    Matcher m4 = featureFactory.http.matcher(text);
-                    if (m4.find()) {
+                    if (httpMatcher.reset(text).find()) {
                         features.http = true;
                     }
 
@@ -603,8 +723,7 @@ public class DatacatSegmenterParser extends AbstractParser {
                     }
 
                     if (previousFeatures != null) {
-                        String vector = previousFeatures.printVector();
-                        segmentationFeatures.append(vector);
+                        previousFeatures.writeTo(segmentationFeatures);
                     }
                     previousFeatures = features;
                 }
@@ -620,7 +739,7 @@ public class DatacatSegmenterParser extends AbstractParser {
             }
         }
         if (previousFeatures != null)
-            segmentationFeatures.append(previousFeatures.printVector());
+            previousFeatures.writeTo(segmentationFeatures);
 
         return segmentationFeatures.toString();
     }
@@ -646,14 +765,14 @@ public class DatacatSegmenterParser extends AbstractParser {
             }
 
             // read from the first until the last page of the document
-            documentSource = DocumentSource.fromPdf(inputFile, -1, -1, true, true, true);
+            documentSource = DatacatDocumentCache.getInstance().fromPdf(inputFile, -1, -1, true, true, true);
             Document doc = new Document(documentSource);
 
             String pdfFileName = inputFile.getName();
             File outputTEIFile = new File(pathTEI + File.separator + pdfFileName.replace(" ", "_").replace(".pdf", ".training.segmentation.tei.xml"));
             File outputRawFile = new File(pathRaw + File.separator + pdfFileName.replace(" ", "_").replace(".pdf", ".training.segmentation"));
 
-            doc.addTokenizedDocument(GrobidAnalysisConfig.defaultInstance());
+            tokenize(doc, GrobidAnalysisConfig.defaultInstance());
 
             if (doc.getBlocks() == null) {
                 throw new Exception("PDF parsing resulted in empty content");
@@ -664,22 +783,8 @@ public class DatacatSegmenterParser extends AbstractParser {
             if (blocks == null) {
                 throw new Exception("PDF parsing resulted in empty content");
             } else {
-                // detect the language
-                String contentSample = "";
-                int sampleLength = 0;
-                for (int i = 0; i < blocks.size(); i++) {
-                    contentSample += doc.getBlocks().get(i).getText();
-                    if (sampleLength > 500) // it's assumed we need 500 characters of sample content for detecting the language
-                        break;
-                }
-
-                Language langID = languageUtilities.getInstance().runLanguageId(contentSample);
-                String lang;
-                if (langID != null) {
-                    lang = langID.getLang();
-                } else {
-                    lang = "fr"; // by default, id is "english"
-                }
+                // detect the language on a bounded sample of the document
+                String lang = languageSampler.detectLanguage(doc);
 
                 // if we work with blocks
                 //String monographFeatures =  getAllBlocksFeatured(doc);
@@ -689,15 +794,15 @@ public class DatacatSegmenterParser extends AbstractParser {
                 List<LayoutToken> tokenizations = doc.getTokenizations(); // the tokenization for all documents
 
                 // we write the data with features yet unlabeled
-                Writer writer = new OutputStreamWriter(new FileOutputStream(outputRawFile, false), "UTF-8");
-                writer.write(segmenterFeatures + "\n");
-                writer.close();
+                try (Writer writer = DatacatArtifacts.openWriter(outputRawFile)) {
+                    writer.write(segmenterFeatures + "\n");
+                }
             }
         } catch (Exception e) {
             throw new GrobidException("An exception occurred while running Grobid training" +
                 " data generation for monograph.", e);
         } finally {
-            DocumentSource.close(documentSource, true, true, true);
+            DatacatDocumentCache.close(documentSource, true, true, true);
         }
     }
 
@@ -722,14 +827,14 @@ public class DatacatSegmenterParser extends AbstractParser {
             }
 
             // read from the first until the last page of the document
-            documentSource = DocumentSource.fromPdf(inputFile, -1, -1, true, true, true);
+            documentSource = DatacatDocumentCache.getInstance().fromPdf(inputFile, -1, -1, true, true, true);
             Document doc = new Document(documentSource);
 
             String pdfFileName = inputFile.getName();
             File outputTEIFile = new File(pathTEI + File.separator + pdfFileName.replace(" ", "_").replace(".pdf", ".training.segmentation.tei.xml"));
             File outputRawFile = new File(pathRaw + File.separator + pdfFileName.replace(" ", "_").replace(".pdf", ".training.segmentation"));
 
-            doc.addTokenizedDocument(GrobidAnalysisConfig.defaultInstance());
+            tokenize(doc, GrobidAnalysisConfig.defaultInstance());
 
             if (doc.getBlocks() == null) {
                 throw new Exception("PDF parsing resulted in empty content");
@@ -740,22 +845,8 @@ public class DatacatSegmenterParser extends AbstractParser {
             if (blocks == null) {
                 throw new Exception("PDF parsing resulted in empty content");
             } else {
-                // detect the language
-                String contentSample = "";
-                int sampleLength = 0;
-                for (int i = 0; i < blocks.size(); i++) {
-                    contentSample += doc.getBlocks().get(i).getText();
-                    if (sampleLength > 500) // it's assumed we need 500 characters of sample content for detecting the language
-                        break;
-                }
-
-                Language langID = languageUtilities.getInstance().runLanguageId(contentSample);
-                String lang;
-                if (langID != null) {
-                    lang = langID.getLang();
-                } else {
-                    lang = "fr"; // by default, id is "english"
-                }
+                // detect the language on a bounded sample of the document
+                String lang = languageSampler.detectLanguage(doc);
 
                 // if we work with blocks
                 //String monographFeatures =  getAllBlocksFeatured(doc);
@@ -765,40 +856,41 @@ public class DatacatSegmenterParser extends AbstractParser {
                 List<LayoutToken> tokenizations = doc.getTokenizations(); // the tokenization for all documents
 
                 // we write the data with features yet unlabeled
-                Writer writer = new OutputStreamWriter(new FileOutputStream(outputRawFile, false), "UTF-8");
-                writer.write(segmenterFeatures + "\n");
-                writer.close();
+                try (Writer writer = DatacatArtifacts.openWriter(outputRawFile)) {
+                    writer.write(segmenterFeatures + "\n");
+                }
 
                 if (segmenterFeatures != null) {
                     // we call the Monograph model for giving labels on the text
                     String rese = label(segmenterFeatures);
-                    StringBuffer bufferMonograph = trainingExtraction(rese, tokenizations, doc);
-
-                    // write the TEI file to reflect the extact layout of the text as extracted from the pdf
-                    writer = new OutputStreamWriter(new FileOutputStream(outputTEIFile, false), "UTF-8");
-                    writer.write("<?xml version=\"1.0\" ?>\n<tei xml:space=\"preserve\">\n\t<teiHeader>\n\t\t<fileDesc xml:id=\"" + id +
-                        "\"/>\n\t</teiHeader>\n\t<text xml:lang=\"" + lang + "\">\n");
-                    writer.write(bufferMonograph.toString());
-                    writer.write("\n\t</text>\n</tei>\n");
-                    writer.close();
+
+                    // write the TEI file to reflect the extact layout of the text as extracted from the pdf,
+                    // the fields are streamed to the file as the labels are read
+                    try (DatacatMetrics.Sample sample = DatacatMetrics.time(DatacatMetrics.SERIALIZATION,
+                        GrobidModels.DATACAT_SEGMENTER.getModelName());
+                         DatacatTeiWriter tei = new DatacatTeiWriter(outputTEIFile)) {
+                        tei.startTrainingDocument(String.valueOf(id), lang);
+                        trainingExtraction(rese, tokenizations, doc, tei);
+                        tei.endTrainingDocument();
+                    }
                 }
             }
         } catch (Exception e) {
             throw new GrobidException("An exception occurred while running Grobid training" +
                 " data generation for monograph.", e);
         } finally {
-            DocumentSource.close(documentSource, true, true, true);
+            DatacatDocumentCache.close(documentSource, true, true, true);
         }
     }
 
     public void extractTextFromPdf(File file, String pathFullText, int id) {
         DocumentSource documentSource = null;
         try {
-            documentSource = DocumentSource.fromPdf(file, -1, -1, true, true, true);
+            documentSource = DatacatDocumentCache.getInstance().fromPdf(file, -1, -1, true, true, true);
             Document doc = new Document(documentSource);
 
             String PDFFileName = file.getName();
-            doc.addTokenizedDocument(GrobidAnalysisConfig.defaultInstance());
+            tokenize(doc, GrobidAnalysisConfig.defaultInstance());
 
             if (doc.getBlocks() == null) {
                 throw new Exception("PDF parsing resulted in empty content");
@@ -807,15 +899,8 @@ public class DatacatSegmenterParser extends AbstractParser {
 
             List<LayoutToken> tokenizations = doc.getTokenizations();
 
-            // TODO language identifier here on content text sample
-            String lang = null;
-            String text = doc.getBlocks().get(0).getText(); // get only the text from the first block as example to recognize the language
-            Language langID = languageUtilities.getInstance().runLanguageId(text);
-            if (langID != null) {
-                lang = langID.getLang();
-            } else {
-                lang = "fr"; // by default, id = english
-            }
+            // language identifier on a bounded sample of the document
+            String lang = languageSampler.detectLanguage(doc);
 
             // also write the raw text as seen before segmentation
             StringBuffer rawtxt = new StringBuffer();
@@ -824,28 +909,31 @@ public class DatacatSegmenterParser extends AbstractParser {
             }
             String outPathRawtext = pathFullText + File.separator +
                 PDFFileName.replace(".pdf", ".datacat.rawtxt");
-            FileUtils.writeStringToFile(new File(outPathRawtext), rawtxt.toString(), "UTF-8");
+            try (Writer writer = DatacatArtifacts.openWriter(new File(outPathRawtext))) {
+                writer.write(rawtxt.toString());
+            }
 
         } catch (Exception e) {
             throw new GrobidException("An exception occured while running Grobid training" +
                 " data generation for monograph model.", e);
         } finally {
-            DocumentSource.close(documentSource, true, true, true);
+            DatacatDocumentCache.close(documentSource, true, true, true);
         }
     }
 
     /**
-     * Extract results from a labelled full text in the training format without any string modification.
+     * Write the results of a labelled full text in the training format without any string modification. Each
+     * field is written as an element as soon as its label is read, the lines of the document being separated
+     * by lb elements.
      *
      * @param result        reult
      * @param tokenizations toks
-     * @return extraction
+     * @param tei           the writer of the training TEI, the text element being open
      */
-    public StringBuffer trainingExtraction(String result,
-                                            List<LayoutToken> tokenizations,
-                                            Document doc) {
-        // this is the main buffer for the whole full text
-        StringBuffer buffer = new StringBuffer();
+    public void trainingExtraction(String result,
+                                   List<LayoutToken> tokenizations,
+                                   Document doc,
+                                   DatacatTeiWriter tei) {
         try {
             List<Block> blocks = doc.getBlocks();
             int currentBlockIndex = 0;
@@ -853,46 +941,27 @@ public class DatacatSegmenterParser extends AbstractParser {
 
             StringTokenizer st = new StringTokenizer(result, "\n");
             String s1 = null; // current label/tag
-            String s2 = null; // current lexical token
-            String s3 = null; // current second lexical token
             String lastTag = null;
+            // element of the field currently written, null if no field is open
+            String openElement = null;
 
-            // current token position
-            int p = 0;
             boolean start = true;
 
             while (st.hasMoreTokens()) {
-                boolean addSpace = false;
                 String tok = st.nextToken().trim();
                 String line = null; // current line
 
                 if (tok.length() == 0) {
                     continue;
                 }
-                StringTokenizer stt = new StringTokenizer(tok, " \t");
-                List<String> localFeatures = new ArrayList<String>();
-                int i = 0;
-
-                boolean newLine = true;
-                int ll = stt.countTokens();
-                while (stt.hasMoreTokens()) {
-                    String s = stt.nextToken().trim();
-                    if (i == 0) {
-                        s2 = TextUtilities.HTMLEncode(s); // lexical token
-                    } else if (i == 1) {
-                        s3 = TextUtilities.HTMLEncode(s); // second lexical token
-                    } else if (i == ll - 1) {
-                        s1 = s; // current label
-                    } else {
-                        localFeatures.add(s); // we keep the feature values in case they appear useful
-                    }
-                    i++;
-                }
+                // the label is the last value of the line, the features are not needed here
+                int labelIndex = Math.max(tok.lastIndexOf(' '), tok.lastIndexOf('\t'));
+                if (labelIndex != -1)
+                    s1 = tok.substring(labelIndex + 1);
 
                 // as we process the document segmentation line by line, we don't use the usual
                 // tokenization to rebuild the text flow, but we get each line again from the
                 // text stored in the document blocks (similarly as when generating the features)
-                line = null;
                 while ((line == null) && (currentBlockIndex < blocks.size())) {
                     Block block = blocks.get(currentBlockIndex);
                     List<LayoutToken> tokens = block.getTokens();
@@ -907,7 +976,6 @@ public class DatacatSegmenterParser extends AbstractParser {
                         indexLine = 0;
                         continue;
                     }
-                    //String[] lines = localText.split("\n");
                     String[] lines = localText.split("[\\n\\r]");
                     if ((lines.length == 0) || (indexLine >= lines.length)) {
                         currentBlockIndex++;
@@ -928,163 +996,69 @@ public class DatacatSegmenterParser extends AbstractParser {
                     }
                 }
 
-                line = TextUtilities.HTMLEncode(line);
-
-                if (newLine && !start) {
-                    buffer.append("<lb/>");
-                }
-
-                String lastTag0 = null;
-                if (lastTag != null) {
-                    if (lastTag.startsWith("I-")) {
-                        lastTag0 = lastTag.substring(2, lastTag.length());
-                    } else {
-                        lastTag0 = lastTag;
-                    }
-                }
-                String currentTag0 = null;
-                if (s1 != null) {
-                    if (s1.startsWith("I-")) {
-                        currentTag0 = s1.substring(2, s1.length());
-                    } else {
-                        currentTag0 = s1;
-                    }
-                }
-
-                //boolean closeParagraph = false;
-                if (lastTag != null) {
-                    //closeParagraph =
-                    testClosingTag(buffer, currentTag0, lastTag0, s1);
+                // every labeled unit is a line
+                if (!start) {
+                    tei.emptyElement("lb");
                 }
 
-                boolean output;
+                String lastTag0 = removeBeginPrefix(lastTag);
+                String currentTag0 = removeBeginPrefix(s1);
 
-                output = writeField(buffer, line, s1, lastTag0, s2, "<front>", "<front>", addSpace, 3);
-                if (!output) {
-                    output = writeField(buffer, line, s1, lastTag0, s2, "<other>", "<other>", addSpace, 3);
-                }
-                if (!output) {
-                    output = writeField(buffer, line, s1, lastTag0, s2, "<body>", "<body>",
-                        addSpace, 3);
+                // we close the current field when the label changes
+                if (openElement != null && !currentTag0.equals(lastTag0)) {
+                    tei.endElement();
+                    tei.whitespace("\n\n");
+                    openElement = null;
                 }
-                if (!output) {
-                    output = writeField(buffer, line, s1, lastTag0, s2, "<back>", "<back>>",
-                        addSpace, 3);
-                }
-                if (!output) {
-                    output = writeField(buffer, line, s1, lastTag0, s2, "<annex>", "<annex>",
-                        addSpace, 3);
-                }
-                lastTag = s1;
 
-                if (!st.hasMoreTokens()) {
-                    if (lastTag != null) {
-                        testClosingTag(buffer, "", currentTag0, s1);
+                String element = getTrainingElement(currentTag0);
+                if (element != null && line != null) {
+                    if (openElement == null) {
+                        tei.whitespace("\t\t\t");
+                        tei.startElement(element);
+                        openElement = element;
                     }
+                    tei.characters(line.replace("@BULLET", "\u2022"));
                 }
-                if (start) {
-                    start = false;
-                }
+                lastTag = s1;
+                start = false;
             }
 
-            return buffer;
+            if (openElement != null) {
+                tei.endElement();
+                tei.whitespace("\n\n");
+            }
         } catch (Exception e) {
             throw new GrobidException("An exception occurred while running Grobid.", e);
         }
     }
 
-    /**
-     * TODO some documentation...
-     *
-     * @param buffer
-     * @param s1
-     * @param lastTag0
-     * @param s2
-     * @param field
-     * @param outField
-     * @param addSpace
-     * @param nbIndent
-     * @return
-     */
-    private boolean writeField(StringBuffer buffer,
-                               String line,
-                               String s1,
-                               String lastTag0,
-                               String s2,
-                               String field,
-                               String outField,
-                               boolean addSpace,
-                               int nbIndent) {
-        boolean result = false;
-        // filter the output path
-        if ((s1.equals(field)) || (s1.equals("I-" + field))) {
-            result = true;
-            line = line.replace("@BULLET", "\u2022");
-            // if previous and current tag are the same, we output the token
-            if (s1.equals(lastTag0) || s1.equals("I-" + lastTag0)) {
-                buffer.append(line);
-            } else if (lastTag0 == null) {
-                // if previous tagname is null, we output the opening xml tag
-                for (int i = 0; i < nbIndent; i++) {
-                    buffer.append("\t");
-                }
-                buffer.append(outField).append(line);
-            } else {
-                // new opening tag, we output the opening xml tag
-                for (int i = 0; i < nbIndent; i++) {
-                    buffer.append("\t");
-                }
-                buffer.append(outField).append(line);
-            } /*else {
-                // otherwise we continue by ouputting the token
-                buffer.append(line);
-            }*/
-        }
-        return result;
+    private static String removeBeginPrefix(String tag) {
+        if (tag != null && tag.startsWith("I-"))
+            return tag.substring(2);
+        return tag;
     }
 
     /**
-     *
-     * @param buffer
-     * @param currentTag0
-     * @param lastTag0
-     * @param currentTag
-     * @return
+     * @return the element of the training TEI for a label of the model, null if the label has no element
      */
-    private boolean testClosingTag(StringBuffer buffer,
-                                   String currentTag0,
-                                   String lastTag0,
-                                   String currentTag) {
-        boolean res = false;
-        // reference_marker and citation_marker are two exceptions because they can be embedded
-
-        if (!currentTag0.equals(lastTag0)) {
-            /*if (currentTag0.equals("<citation_marker>") || currentTag0.equals("<figure_marker>")) {
-                return res;
-            }*/
-
-            res = false;
-            // we close the current tag
-            if (lastTag0.equals("<front>")) {
-                buffer.append("</front>\n\n");
-                res = true;
-            } else if (lastTag0.equals("<body>")) {
-                buffer.append("</body>\n\n");
-                res = true;
-            } else if (lastTag0.equals("<back>")) {
-                buffer.append("</back>\n\n");
-                res = true;
-            } else if (lastTag0.equals("<annex>")) {
-                buffer.append("</annex>\n\n");
-                res = true;
-            } else if (lastTag0.equals("<other>")) {
-                buffer.append("</other>\n\n");
-            } else {
-                res = false;
-            }
-
+    private static String getTrainingElement(String label) {
+        if (label == null)
+            return null;
+        switch (label) {
+            case "<front>":
+                return "front";
+            case "<other>":
+                return "other";
+            case "<body>":
+                return "body";
+            case "<back>":
+                return "back";
+            case "<annex>":
+                return "annex";
+            default:
+                return null;
         }
-        return res;
     }
 
     @Override
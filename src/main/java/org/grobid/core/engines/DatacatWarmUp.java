@@ -0,0 +1,131 @@
+package org.grobid.core.engines;
+
+import org.apache.commons.io.IOUtils;
+import org.grobid.core.engines.config.GrobidAnalysisConfig;
+import org.grobid.core.exceptions.GrobidResourceException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Load the datacat models and warm them up before the first real document, so that the first requests after a
+ * start do not pay for the model loading and the JIT compilation.
+ *
+ * The built-in warm-up documents are two small featured sequences (taken from the evaluation data) which are
+ * labeled by the datacat-segmenter and datacat-body-segmentation models. When a PDF is given, the complete
+ * processing of this PDF is also repeated, which warms up pdfalto, the tokenization and the featurizers. Each
+ * warm-up stops when its duration does not improve anymore, or after the maximum number of iterations.
+ */
+public class DatacatWarmUp {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatacatWarmUp.class);
+
+    public static final String SEGMENTER_FIXTURE = "/warmup/datacat-segmenter.warmup";
+    public static final String BODY_FIXTURE = "/warmup/datacat-body-segmentation.warmup";
+
+    public static final int DEFAULT_MAX_ITERATIONS = 20;
+
+    // number of iterations without improvement of the best duration before stopping
+    private static final int STABLE_ITERATIONS = 3;
+
+    private final int maxIterations;
+    private final File warmUpPdf;
+
+    // step -> duration in milliseconds, in execution order
+    private final Map<String, Long> loadTimes = new LinkedHashMap<>();
+    private final Map<String, Long> warmUpTimes = new LinkedHashMap<>();
+    private final Map<String, Integer> warmUpIterations = new LinkedHashMap<>();
+
+    /**
+     * @param maxIterations maximum number of iterations of each warm-up
+     * @param warmUpPdf     a PDF to be processed during the warm-up, null for the built-in documents only
+     */
+    public DatacatWarmUp(int maxIterations, File warmUpPdf) {
+        this.maxIterations = Math.max(1, maxIterations);
+        this.warmUpPdf = warmUpPdf;
+    }
+
+    public void run(EngineDatacatParsers parsers) throws Exception {
+        long start = System.currentTimeMillis();
+        final DatacatSegmenterParser segmenterParser = parsers.getDatacatSegmenterParser();
+        loadTimes.put("datacat-segmenter", System.currentTimeMillis() - start);
+
+        start = System.currentTimeMillis();
+        final DatacatBodySegmentationParser bodyParser = parsers.getDatacatBodySegmentationParser();
+        loadTimes.put("datacat-body-segmentation", System.currentTimeMillis() - start);
+
+        final String segmenterFeatures = readFixture(SEGMENTER_FIXTURE);
+        final String bodyFeatures = readFixture(BODY_FIXTURE);
+        warmUp("datacat-segmenter", () -> segmenterParser.label(segmenterFeatures));
+        warmUp("datacat-body-segmentation", () -> bodyParser.label(bodyFeatures));
+
+        if (warmUpPdf != null) {
+            if (!warmUpPdf.exists()) {
+                LOGGER.warn("The warm-up PDF " + warmUpPdf.getPath() + " does not exist, it is ignored");
+            } else {
+                warmUp("pdf", () -> bodyParser.processingEntries(warmUpPdf, GrobidAnalysisConfig.defaultInstance()));
+            }
+        }
+
+        LOGGER.info(getReport());
+    }
+
+    private void warmUp(String step, Callable<?> task) throws Exception {
+        long start = System.currentTimeMillis();
+        long best = Long.MAX_VALUE;
+        int nbStable = 0;
+        int iteration = 0;
+        while (iteration < maxIterations && nbStable < STABLE_ITERATIONS) {
+            long iterationStart = System.nanoTime();
+            task.call();
+            long duration = System.nanoTime() - iterationStart;
+            iteration++;
+            // an iteration improving the best duration by less than 5% does not count as an improvement
+            if (duration < best * 0.95) {
+                best = duration;
+                nbStable = 0;
+            } else {
+                nbStable++;
+            }
+        }
+        warmUpTimes.put(step, System.currentTimeMillis() - start);
+        warmUpIterations.put(step, iteration);
+    }
+
+    private static String readFixture(String path) {
+        try (InputStream in = DatacatWarmUp.class.getResourceAsStream(path)) {
+            if (in == null)
+                throw new GrobidResourceException("The warm-up document " + path + " is not in the classpath");
+            return IOUtils.toString(in, StandardCharsets.UTF_8);
+        } catch (GrobidResourceException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new GrobidResourceException("Cannot read the warm-up document " + path, e);
+        }
+    }
+
+    public Map<String, Long> getLoadTimes() {
+        return loadTimes;
+    }
+
+    public Map<String, Long> getWarmUpTimes() {
+        return warmUpTimes;
+    }
+
+    public String getReport() {
+        StringBuilder report = new StringBuilder("warm-up completed:");
+        for (Map.Entry<String, Long> load : loadTimes.entrySet()) {
+            report.append("\n\t").append(load.getKey()).append(" loaded in ").append(load.getValue()).append(" ms");
+        }
+        for (Map.Entry<String, Long> warmUp : warmUpTimes.entrySet()) {
+            report.append("\n\t").append(warmUp.getKey()).append(" warmed up in ").append(warmUp.getValue())
+                .append(" ms (").append(warmUpIterations.get(warmUp.getKey())).append(" iterations)");
+        }
+        return report.toString();
+    }
+}
@@ -2,9 +2,13 @@
 package org.grobid.core.engines;
 
 import org.apache.commons.lang3.tuple.Pair;
+import org.grobid.core.data.EntryItem;
+import org.grobid.core.document.DatacatDocumentCache;
+import org.grobid.core.document.DatacatJsonlWriter;
 import org.grobid.core.document.Document;
 import org.grobid.core.engines.config.GrobidAnalysisConfig;
 import org.grobid.core.exceptions.GrobidException;
+import org.grobid.core.utilities.DatacatInputWalker;
 import org.grobid.core.utilities.counters.CntManager;
 import org.grobid.core.utilities.counters.impl.CntManagerFactory;
 import org.grobid.core.utilities.crossref.CrossrefClient;
@@ -12,9 +16,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FilenameFilter;
 import java.io.IOException;
 import java.util.List;
+import java.util.function.Consumer;
 
 /**
  * A class for managing the extraction of medical information from PDF documents or raw text.
@@ -53,12 +57,20 @@ public class EngineDatacat extends Engine {
      *                     file, -1 if not used
      */
     public void createTrainingBlank(File inputFile, String pathRaw, String pathTEI,  int id) {
-        System.out.println(inputFile.getPath());
+        createTrainingBlank(parsers, inputFile, pathRaw, pathTEI, id);
+    }
+
+    private void createTrainingBlank(EngineDatacatParsers parsers, File inputFile, String pathRaw, String pathTEI, int id) {
+        LOGGER.debug(inputFile.getPath());
         parsers.getDatacatSegmenterParser().createBlankTrainingFromPDF(inputFile, pathRaw, pathTEI, id);
     }
 
     public void createTrainingBlankBody(File inputFile, String pathOutput,  int id) {
-        System.out.println(inputFile.getPath());
+        createTrainingBlankBody(parsers, inputFile, pathOutput, id);
+    }
+
+    private void createTrainingBlankBody(EngineDatacatParsers parsers, File inputFile, String pathOutput, int id) {
+        LOGGER.debug(inputFile.getPath());
         parsers.getDatacatBodySegmentationParser().createBlankTrainingFromPDF(inputFile, pathOutput, id);
     }
 
@@ -73,14 +85,22 @@ public class EngineDatacat extends Engine {
      * @param id           : an optional ID to be used in the TEI file, -1 if not used
      */
     public void createTrainingSegmenter(File inputFile, String pathRaw, String pathTEI, int id) {
-        System.out.println(inputFile.getPath());
+        createTrainingSegmenter(parsers, inputFile, pathRaw, pathTEI, id);
+    }
+
+    private void createTrainingSegmenter(EngineDatacatParsers parsers, File inputFile, String pathRaw, String pathTEI, int id) {
+        LOGGER.debug(inputFile.getPath());
         parsers.getDatacatSegmenterParser().createTrainingFromPDF(inputFile, pathRaw, pathTEI, id);
     }
 
     public void createTrainingBody(File inputFile,
                                    String pathOutput,
                                    int id) {
-        System.out.println(inputFile.getPath());
+        createTrainingBody(parsers, inputFile, pathOutput, id);
+    }
+
+    private void createTrainingBody(EngineDatacatParsers parsers, File inputFile, String pathOutput, int id) {
+        LOGGER.debug(inputFile.getPath());
         parsers.getDatacatBodySegmentationParser().createTraining(inputFile, pathOutput , id);
     }
 
@@ -94,9 +114,68 @@ public class EngineDatacat extends Engine {
      * @param id           : an optional ID to be used in the TEI file, -1 if not used
      */
     public void extractTxtFromPDF(File inputFile, String pathOutput,  int id) {
+        extractTxtFromPDF(parsers, inputFile, pathOutput, id);
+    }
+
+    private void extractTxtFromPDF(EngineDatacatParsers parsers, File inputFile, String pathOutput, int id) {
         parsers.getDatacatSegmenterParser().extractTextFromPdf(inputFile, pathOutput, id);
     }
 
+    /**
+     * Extract the structured body of a sale catalogue, i.e. the entries, titles and title descriptions
+     * with their layout tokens and coordinates.
+     *
+     * @param inputFile : the path of the PDF file to be processed
+     * @param config    : the analysis configuration (page range, assets, ...)
+     * @return the list of body items in reading order
+     */
+    public List<EntryItem> processCatalogue(File inputFile, GrobidAnalysisConfig config) throws Exception {
+        return parsers.getDatacatBodySegmentationParser().processingEntries(inputFile, config);
+    }
+
+    /**
+     * Streaming variant of {@link #processCatalogue(File, GrobidAnalysisConfig)}, each body item is passed to
+     * the handler as soon as it is complete.
+     *
+     * @return the number of items passed to the handler
+     */
+    public int processCatalogue(File inputFile, GrobidAnalysisConfig config, Consumer<EntryItem> entryHandler)
+        throws Exception {
+        return parsers.getDatacatBodySegmentationParser().processingEntries(inputFile, config, entryHandler);
+    }
+
+    /**
+     * Extract the body items of a catalogue and write them in a JSON Lines file {@code <name>.entries.jsonl},
+     * one record per item (see DatacatJsonlWriter). The records are written as soon as the items are complete.
+     *
+     * @param inputFile  : the path of the PDF file to be processed
+     * @param pathOutput : the path where to put the JSON Lines file
+     * @return the number of records written
+     */
+    public int processCatalogueToJsonl(File inputFile, String pathOutput) throws Exception {
+        return processCatalogueToJsonl(inputFile, pathOutput, false);
+    }
+
+    /**
+     * @param catalogueIdFromName : if true, the catalogue identifier of the records is the name of the PDF
+     *                              without extension instead of the MD5 of the PDF
+     */
+    public int processCatalogueToJsonl(File inputFile, String pathOutput, boolean catalogueIdFromName)
+        throws Exception {
+        return processCatalogueToJsonl(parsers, inputFile, pathOutput, catalogueIdFromName);
+    }
+
+    private int processCatalogueToJsonl(EngineDatacatParsers parsers, File inputFile, String pathOutput,
+                                        boolean catalogueIdFromName) throws Exception {
+        String name = inputFile.getName().replaceFirst("\\.[pP][dD][fF]$", "");
+        String catalogueId = catalogueIdFromName ? name : DatacatJsonlWriter.defaultCatalogueId(inputFile);
+        File outputFile = new File(pathOutput, name + ".entries.jsonl");
+        try (DatacatJsonlWriter writer = new DatacatJsonlWriter(outputFile)) {
+            return parsers.getDatacatBodySegmentationParser().processingEntries(inputFile,
+                GrobidAnalysisConfig.defaultInstance(), writer.forCatalogue(catalogueId));
+        }
+    }
+
     /**
      * Process all the PDF in a given directory with a monograph process and
      * produce the corresponding training data format files for manual
@@ -112,41 +191,25 @@ public class EngineDatacat extends Engine {
      * @return the number of processed files.
      */
     public int batchCreateTrainingSegmenter(String directoryPath, String resultPath, int ind) {
-        try {
-            File path = new File(directoryPath);
-            // we process all pdf files in the directory
-            File[] refFiles = path.listFiles(new FilenameFilter() {
-                public boolean accept(File dir, String name) {
-                    System.out.println(name);
-                    return name.endsWith(".pdf") || name.endsWith(".PDF");
-                }
-            });
-
-            if (refFiles == null)
-                return 0;
-
-            System.out.println(refFiles.length + " files to be processed.");
+        return batchCreateTrainingSegmenter(directoryPath, resultPath, ind, 1);
+    }
 
-            int n = 0;
-            if (ind == -1) {
-                // for undefined identifier (value at -1), we initialize it to 0
-                n = 1;
-            }
-            for (final File pdfFile : refFiles) {
-                try {
-                    createTrainingSegmenter(pdfFile, resultPath, resultPath, ind + n);
-                } catch (final Exception exp) {
-                    LOGGER.error("An error occured while processing the following pdf: "
-                        + pdfFile.getPath(), exp);
-                }
-                if (ind != -1)
-                    n++;
-            }
+    /**
+     * Same as {@link #batchCreateTrainingSegmenter(String, String, int)} with nbThreads PDF processed in parallel.
+     */
+    public int batchCreateTrainingSegmenter(String directoryPath, String resultPath, int ind, int nbThreads) {
+        return batchCreateTrainingSegmenter(directoryPath, resultPath, ind, nbThreads, new DatacatInputWalker());
+    }
 
-            return refFiles.length;
-        } catch (final Exception exp) {
-            throw new GrobidException("An exception occured while running Grobid batch.", exp);
-        }
+    /**
+     * Same as {@link #batchCreateTrainingSegmenter(String, String, int, int)} with the input files discovered by
+     * the given walker, the results are written in the same sub-directory as their PDF relatively to resultPath.
+     */
+    public int batchCreateTrainingSegmenter(String directoryPath, String resultPath, int ind, int nbThreads,
+                                            DatacatInputWalker inputWalker) {
+        return runBatch(directoryPath, resultPath, ind, nbThreads, inputWalker, "createTrainingSegmenter",
+            (workerParsers, pdfFile, outputPath, id) ->
+                createTrainingSegmenter(workerParsers, pdfFile, outputPath, outputPath, id));
     }
 
     /**
@@ -164,41 +227,18 @@ public class EngineDatacat extends Engine {
      * @return the number of processed files.
      */
     public int batchCreateTrainingBlank(String directoryPath, String resultPath, int ind) {
-        try {
-            File path = new File(directoryPath);
-            // we process all pdf files in the directory
-            File[] refFiles = path.listFiles(new FilenameFilter() {
-                public boolean accept(File dir, String name) {
-                    System.out.println(name);
-                    return name.endsWith(".pdf") || name.endsWith(".PDF");
-                }
-            });
-
-            if (refFiles == null)
-                return 0;
-
-            System.out.println(refFiles.length + " files to be processed.");
+        return batchCreateTrainingBlank(directoryPath, resultPath, ind, 1);
+    }
 
-            int n = 0;
-            if (ind == -1) {
-                // for undefined identifier (value at -1), we initialize it to 0
-                n = 1;
-            }
-            for (final File pdfFile : refFiles) {
-                try {
-                    createTrainingBlank(pdfFile, resultPath, resultPath, ind + n);
-                } catch (final Exception exp) {
-                    LOGGER.error("An error occurred while processing the following pdf: "
-                        + pdfFile.getPath(), exp);
-                }
-                if (ind != -1)
-                    n++;
-            }
+    public int batchCreateTrainingBlank(String directoryPath, String resultPath, int ind, int nbThreads) {
+        return batchCreateTrainingBlank(directoryPath, resultPath, ind, nbThreads, new DatacatInputWalker());
+    }
 
-            return refFiles.length;
-        } catch (final Exception exp) {
-            throw new GrobidException("An exception occurred while running Grobid batch.", exp);
-        }
+    public int batchCreateTrainingBlank(String directoryPath, String resultPath, int ind, int nbThreads,
+                                        DatacatInputWalker inputWalker) {
+        return runBatch(directoryPath, resultPath, ind, nbThreads, inputWalker, "createTrainingBlank",
+            (workerParsers, pdfFile, outputPath, id) ->
+                createTrainingBlank(workerParsers, pdfFile, outputPath, outputPath, id));
     }
 
     /**
@@ -216,114 +256,148 @@ public class EngineDatacat extends Engine {
      * @return the number of processed files.
      */
     public int batchExtractTxtFromPDF(String directoryPath, String resultPath, int ind) {
-        try {
-            File path = new File(directoryPath);
-            // we process all pdf files in the directory
-            File[] refFiles = path.listFiles(new FilenameFilter() {
-                public boolean accept(File dir, String name) {
-                    System.out.println(name);
-                    return name.endsWith(".pdf") || name.endsWith(".PDF");
-                }
-            });
+        return batchExtractTxtFromPDF(directoryPath, resultPath, ind, 1);
+    }
 
-            if (refFiles == null)
-                return 0;
+    public int batchExtractTxtFromPDF(String directoryPath, String resultPath, int ind, int nbThreads) {
+        return batchExtractTxtFromPDF(directoryPath, resultPath, ind, nbThreads, new DatacatInputWalker());
+    }
 
-            System.out.println(refFiles.length + " files to be processed.");
+    public int batchExtractTxtFromPDF(String directoryPath, String resultPath, int ind, int nbThreads,
+                                      DatacatInputWalker inputWalker) {
+        return runBatch(directoryPath, resultPath, ind, nbThreads, inputWalker, "extractTxtFromPDF",
+            (workerParsers, pdfFile, outputPath, id) ->
+                extractTxtFromPDF(workerParsers, pdfFile, outputPath, id));
+    }
 
-            int n = 0;
-            if (ind == -1) {
-                // for undefined identifier (value at -1), we initialize it to 0
-                n = 1;
-            }
-            for (final File pdfFile : refFiles) {
-                try {
-                    extractTxtFromPDF(pdfFile, resultPath, ind + n);
-                } catch (final Exception exp) {
-                    LOGGER.error("An error occurred while processing the following pdf: "
-                        + pdfFile.getPath(), exp);
-                }
-                if (ind != -1)
-                    n++;
-            }
+    public int batchCreateTrainingBlankBody(String directoryPath, String resultPath, int ind) {
+        return batchCreateTrainingBlankBody(directoryPath, resultPath, ind, 1);
+    }
 
-            return refFiles.length;
-        } catch (final Exception exp) {
-            throw new GrobidException("An exception occurred while running Grobid batch.", exp);
-        }
+    public int batchCreateTrainingBlankBody(String directoryPath, String resultPath, int ind, int nbThreads) {
+        return batchCreateTrainingBlankBody(directoryPath, resultPath, ind, nbThreads, new DatacatInputWalker());
     }
 
-    public int batchCreateTrainingBlankBody(String directoryPath, String resultPath, int ind) {
-        try {
-            File path = new File(directoryPath);
-            // we process all pdf files in the directory
-            File[] refFiles = path.listFiles(new FilenameFilter() {
-                public boolean accept(File dir, String name) {
-                    System.out.println(name);
-                    return name.endsWith(".pdf") || name.endsWith(".PDF");
-                }
-            });
+    public int batchCreateTrainingBlankBody(String directoryPath, String resultPath, int ind, int nbThreads,
+                                            DatacatInputWalker inputWalker) {
+        return runBatch(directoryPath, resultPath, ind, nbThreads, inputWalker, "createTrainingBlankBody",
+            (workerParsers, pdfFile, outputPath, id) ->
+                createTrainingBlankBody(workerParsers, pdfFile, outputPath, id));
+    }
 
-            if (refFiles == null)
-                return 0;
+    public int batchCreateTrainingBody(String directoryPath, String resultPath, int ind) {
+        return batchCreateTrainingBody(directoryPath, resultPath, ind, 1);
+    }
 
-            System.out.println(refFiles.length + " files to be processed.");
+    public int batchCreateTrainingBody(String directoryPath, String resultPath, int ind, int nbThreads) {
+        return batchCreateTrainingBody(directoryPath, resultPath, ind, nbThreads, new DatacatInputWalker());
+    }
 
-            int n = 0;
-            if (ind == -1) {
-                // for undefined identifier (value at -1), we initialize it to 0
-                n = 1;
-            }
-            for (final File pdfFile : refFiles) {
-                try {
-                    createTrainingBlankBody(pdfFile, resultPath, ind + n);
-                } catch (final Exception exp) {
-                    LOGGER.error("An error occurred while processing the following pdf: "
-                        + pdfFile.getPath(), exp);
-                }
-                if (ind != -1)
-                    n++;
-            }
+    public int batchCreateTrainingBody(String directoryPath, String resultPath, int ind, int nbThreads,
+                                       DatacatInputWalker inputWalker) {
+        return runBatch(directoryPath, resultPath, ind, nbThreads, inputWalker, "createTrainingBody",
+            (workerParsers, pdfFile, outputPath, id) ->
+                createTrainingBody(workerParsers, pdfFile, outputPath, id));
+    }
 
-            return refFiles.length;
-        } catch (final Exception exp) {
-            throw new GrobidException("An exception occurred while running Grobid batch.", exp);
-        }
+    /**
+     * Extract the body items of all the PDF in a given directory, one JSON Lines file per PDF, the catalogue
+     * identifier of the records being the MD5 of the PDF, as for the service.
+     *
+     * @param directoryPath - the path to the directory containing PDF to be processed.
+     * @param resultPath    - the path to the directory where the JSON Lines files shall be written.
+     * @return the number of processed files.
+     */
+    public int batchProcessCatalogueToJsonl(String directoryPath, String resultPath, int nbThreads) {
+        return batchProcessCatalogueToJsonl(directoryPath, resultPath, nbThreads, new DatacatInputWalker(), false);
     }
 
-    public int batchCreateTrainingBody(String directoryPath, String resultPath, int ind) {
+    /**
+     * @param catalogueIdFromName - if true, the catalogue identifier of the records is the name of the PDF
+     *                              without extension instead of the MD5 of the PDF
+     */
+    public int batchProcessCatalogueToJsonl(String directoryPath, String resultPath, int nbThreads,
+                                            DatacatInputWalker inputWalker, boolean catalogueIdFromName) {
+        return runBatch(directoryPath, resultPath, -1, nbThreads, inputWalker, "processCatalogueToJsonl",
+            (workerParsers, pdfFile, outputPath, id) ->
+                processCatalogueToJsonl(workerParsers, pdfFile, outputPath, catalogueIdFromName));
+    }
+
+    /**
+     * A unit of work of a batch: process a PDF file and write the results in the output directory.
+     */
+    private interface BatchTask {
+        void process(EngineDatacatParsers workerParsers, File pdfFile, String outputPath, int id) throws Exception;
+    }
+
+    /**
+     * Apply a task to all the PDF of a directory with a pool of nbThreads workers. Every worker gets its own
+     * set of parsers, the models themselves are loaded once and shared by the tagger factory. The files are
+     * submitted to the workers while the input directory is walked, and the output directory of each file
+     * mirrors its sub-directory in the input directory.
+     *
+     * The progress is recorded in a journal of the batch in the output directory, the files already processed
+     * by a previous run of the same batch are skipped (see DatacatBatchJournal).
+     *
+     * @return the number of files submitted to the workers
+     */
+    private int runBatch(String directoryPath,
+                         final String resultPath,
+                         final int ind,
+                         int nbThreads,
+                         DatacatInputWalker inputWalker,
+                         String batchName,
+                         final BatchTask task) {
         try {
             File path = new File(directoryPath);
-            // we process all pdf files in the directory
-            File[] refFiles = path.listFiles(new FilenameFilter() {
-                public boolean accept(File dir, String name) {
-                    System.out.println(name);
-                    return name.endsWith(".pdf") || name.endsWith(".PDF");
-                }
-            });
-
-            if (refFiles == null)
+            if (!path.isDirectory())
                 return 0;
 
-            System.out.println(refFiles.length + " files to be processed.");
-
-            int n = 0;
-            if (ind == -1) {
-                // for undefined identifier (value at -1), we initialize it to 0
-                n = 1;
-            }
-            for (final File pdfFile : refFiles) {
+            final DatacatBatchJournal journal = new DatacatBatchJournal(new File(resultPath), batchName);
+            final DatacatBatchExecutor<EngineDatacatParsers> executor =
+                new DatacatBatchExecutor<>(nbThreads, EngineDatacatParsers::new);
+
+            // for undefined identifier (value at -1), we initialize it to 0
+            final int[] n = {ind == -1 ? 1 : 0};
+            final int[] nbSubmitted = {0};
+            int nbFiles;
+            try {
+                nbFiles = inputWalker.walk(path, (pdfFile, relativeDirectory) -> {
+                    // path of the file relative to the input directory, the key of the file in the journal
+                    final String inputPath = DatacatInputWalker.getInputPath(pdfFile, relativeDirectory);
+                    if (journal.isDone(inputPath, pdfFile)) {
+                        LOGGER.debug(inputPath + " already processed, skipped");
+                        return;
+                    }
+                    final String outputPath = DatacatInputWalker.getOutputPath(resultPath, relativeDirectory);
+                    File outputDirectory = new File(outputPath);
+                    if (!outputDirectory.isDirectory() && !outputDirectory.mkdirs())
+                        throw new GrobidException("Cannot create the output directory " + outputPath);
+                    executor.submit(pdfFile, ind + n[0], (workerParsers, file, id) -> {
+                        String md5 = DatacatDocumentCache.md5(file);
+                        journal.started(inputPath, file, md5);
+                        try {
+                            task.process(workerParsers, file, outputPath, id);
+                        } catch (Exception e) {
+                            journal.failed(inputPath, file, md5, e);
+                            throw e;
+                        }
+                        journal.done(inputPath, file, md5);
+                    });
+                    nbSubmitted[0]++;
+                    if (ind != -1)
+                        n[0]++;
+                });
+            } finally {
                 try {
-                    createTrainingBody(pdfFile, resultPath, ind + n);
-                } catch (final Exception exp) {
-                    LOGGER.error("An error occurred while processing the following pdf: "
-                        + pdfFile.getPath(), exp);
+                    executor.shutdownAndWait();
+                } finally {
+                    journal.close();
                 }
-                if (ind != -1)
-                    n++;
             }
-
-            return refFiles.length;
+            LOGGER.info(nbFiles + " files found in " + path.getPath() + ", " + (nbFiles - nbSubmitted[0]) +
+                " already processed");
+            return nbSubmitted[0];
         } catch (final Exception exp) {
             throw new GrobidException("An exception occurred while running Grobid batch.", exp);
         }
@@ -5,6 +5,7 @@ import org.grobid.core.engines.config.GrobidAnalysisConfig;
 import org.grobid.core.factory.GrobidDatacatFactory;
 import org.grobid.core.main.batch.GrobidMainArgs;
 import org.grobid.core.main.batch.GrobidDatacatMainArgs;
+import org.grobid.core.utilities.DatacatInputWalker;
 import org.grobid.core.utilities.IOUtilities;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,7 +40,7 @@ public class ProcessEngineDatacat implements Closeable {
      * @return the engine instance.
      */
 
-    protected EngineDatacat getEngine() {
+    protected static synchronized EngineDatacat getEngine() {
         if (engine == null) {
             engine = GrobidDatacatFactory.getInstance().createEngine();
         }
@@ -51,8 +52,10 @@ public class ProcessEngineDatacat implements Closeable {
      */
     @Override
     public void close() throws IOException {
-        if (engine != null) {
-            engine.close();
+        synchronized (ProcessEngineDatacat.class) {
+            if (engine != null) {
+                engine.close();
+            }
         }
         System.exit(0);
     }
@@ -66,14 +69,16 @@ public class ProcessEngineDatacat implements Closeable {
     public void createTrainingSegmenter(final GrobidDatacatMainArgs pGbdArgs) throws Exception {
         inferPdfInputPath(pGbdArgs);
         inferOutputPath(pGbdArgs);
-        int result = getEngine().batchCreateTrainingSegmenter(pGbdArgs.getPath2Input(), pGbdArgs.getPath2Output(), -1);
+        int result = getEngine().batchCreateTrainingSegmenter(pGbdArgs.getPath2Input(), pGbdArgs.getPath2Output(), -1,
+            pGbdArgs.getNbThreads(), getInputWalker(pGbdArgs));
         LOGGER.info(result + " files processed.");
     }
 
     public void createTrainingBody(final GrobidDatacatMainArgs pGbdArgs) throws Exception {
         inferPdfInputPath(pGbdArgs);
         inferOutputPath(pGbdArgs);
-        int result = getEngine().batchCreateTrainingBody(pGbdArgs.getPath2Input(), pGbdArgs.getPath2Output(), -1);
+        int result = getEngine().batchCreateTrainingBody(pGbdArgs.getPath2Input(), pGbdArgs.getPath2Output(), -1,
+            pGbdArgs.getNbThreads(), getInputWalker(pGbdArgs));
         LOGGER.info(result + " files processed.");
     }
 
@@ -87,14 +92,16 @@ public class ProcessEngineDatacat implements Closeable {
     public void createTrainingBlank(final GrobidDatacatMainArgs pGbdArgs) throws Exception {
         inferPdfInputPath(pGbdArgs);
         inferOutputPath(pGbdArgs);
-        int result = getEngine().batchCreateTrainingBlank(pGbdArgs.getPath2Input(), pGbdArgs.getPath2Output(), -1);
+        int result = getEngine().batchCreateTrainingBlank(pGbdArgs.getPath2Input(), pGbdArgs.getPath2Output(), -1,
+            pGbdArgs.getNbThreads(), getInputWalker(pGbdArgs));
         LOGGER.info(result + " files processed.");
     }
 
     public void createTrainingBlankBody(final GrobidDatacatMainArgs pGbdArgs) throws Exception {
         inferPdfInputPath(pGbdArgs);
         inferOutputPath(pGbdArgs);
-        int result = getEngine().batchCreateTrainingBlankBody(pGbdArgs.getPath2Input(), pGbdArgs.getPath2Output(), -1);
+        int result = getEngine().batchCreateTrainingBlankBody(pGbdArgs.getPath2Input(), pGbdArgs.getPath2Output(), -1,
+            pGbdArgs.getNbThreads(), getInputWalker(pGbdArgs));
         LOGGER.info(result + " files processed.");
     }
 
@@ -108,10 +115,34 @@ public class ProcessEngineDatacat implements Closeable {
     public void extractTxtFromPDF(final GrobidDatacatMainArgs pGbdArgs) throws Exception {
         inferPdfInputPath(pGbdArgs);
         inferOutputPath(pGbdArgs);
-        int result = getEngine().batchExtractTxtFromPDF(pGbdArgs.getPath2Input(), pGbdArgs.getPath2Output(), -1);
+        int result = getEngine().batchExtractTxtFromPDF(pGbdArgs.getPath2Input(), pGbdArgs.getPath2Output(), -1,
+            pGbdArgs.getNbThreads(), getInputWalker(pGbdArgs));
         LOGGER.info(result + " files processed.");
     }
 
+    /**
+     * Extract the catalogue entries of the PDF documents of the input directory in JSON Lines, one file per PDF,
+     * for the indexing of the lots. The catalogues are identified by the MD5 of their PDF, or by the name of
+     * their PDF with -catalogueIdFromName.
+     *
+     * @param pGbdArgs The parameters.
+     * @throws Exception
+     */
+    public void processCatalogueToJsonl(final GrobidDatacatMainArgs pGbdArgs) throws Exception {
+        inferPdfInputPath(pGbdArgs);
+        inferOutputPath(pGbdArgs);
+        int result = getEngine().batchProcessCatalogueToJsonl(pGbdArgs.getPath2Input(), pGbdArgs.getPath2Output(),
+            pGbdArgs.getNbThreads(), getInputWalker(pGbdArgs), pGbdArgs.isCatalogueIdFromName());
+        LOGGER.info(result + " files processed.");
+    }
+
+    /**
+     * @return the walker of the input directory, built from the recursive flag and the include/exclude globs
+     */
+    private static DatacatInputWalker getInputWalker(final GrobidDatacatMainArgs pGbdArgs) {
+        return new DatacatInputWalker(pGbdArgs.isRecursive(), pGbdArgs.getIncludes(), pGbdArgs.getExcludes());
+    }
+
     /**
      * List the engine methods that can be called.
      *
@@ -20,4 +20,13 @@ DatacatLabels() {
     public static final TaggingLabel BACK_MATTER = new TaggingLabelImpl(GrobidModels.DATACAT_SEGMENTER, BACK_MATTER_LABEL);
     public static final TaggingLabel ANNEX = new TaggingLabelImpl(GrobidModels.DATACAT_SEGMENTER, ANNEX_LABEL);
 
+// Grobid-datacat body segmentation labels
+    public final static String ENTRY_LABEL = "<entry>";
+    public final static String ENTRY_TITLE_LABEL = "<title>";
+    public final static String ENTRY_TITLEDESC_LABEL = "<titledesc>";
+
+    public static final TaggingLabel ENTRY = new TaggingLabelImpl(GrobidModels.DATACAT_BODY_SEGMENTATION, ENTRY_LABEL);
+    public static final TaggingLabel ENTRY_TITLE = new TaggingLabelImpl(GrobidModels.DATACAT_BODY_SEGMENTATION, ENTRY_TITLE_LABEL);
+    public static final TaggingLabel ENTRY_TITLEDESC = new TaggingLabelImpl(GrobidModels.DATACAT_BODY_SEGMENTATION, ENTRY_TITLEDESC_LABEL);
+
 }
@@ -1,16 +1,30 @@
 package org.grobid.core.factory;
 
+import org.apache.commons.pool.impl.GenericObjectPool;
 import org.grobid.core.engines.EngineDatacat;
+import org.grobid.core.exceptions.GrobidException;
+import org.grobid.core.utilities.DatacatConfiguration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.NoSuchElementException;
 
 /**
  *
  * Factory to get engine instances.
  *
+ * A single shared engine is available with getEngine(), for sequential use. Multi-threaded callers borrow
+ * engines from a pool with borrowEngine() and give them back with returnEngine(), an engine is then never used
+ * by two threads at the same time and the models are not reloaded for each new engine.
+ *
  */
 public class GrobidDatacatFactory extends GrobidFactory {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GrobidDatacatFactory.class);
 
     private static EngineDatacat engine;
 
+    private static GenericObjectPool<EngineDatacat> enginePool = null;
+
     /**
      * The instance of GrobidDatacatFactory.
      */
@@ -29,7 +43,7 @@ public class GrobidDatacatFactory extends GrobidFactory {
      *
      * @return GrobidFactory
      */
-    public static GrobidDatacatFactory getInstance() {
+    public static synchronized GrobidDatacatFactory getInstance() {
         if (factory == null) {
             factory = newInstance();
         }
@@ -40,7 +54,7 @@ public class GrobidDatacatFactory extends GrobidFactory {
         return getEngine(false);
     }
 
-    public  EngineDatacat getEngine(boolean preload) {
+    public synchronized EngineDatacat getEngine(boolean preload) {
         if (engine == null) {
             engine = createEngine(preload);
         }
@@ -60,6 +74,96 @@ public class GrobidDatacatFactory extends GrobidFactory {
         return new EngineDatacat(preload);
     }
 
+    /**
+     * Create the engine pool with the given parameters, an existing pool is closed.
+     */
+    public synchronized void configureEnginePool(DatacatConfiguration.PoolParameters parameters) {
+        closeEnginePool();
+        GenericObjectPool.Config config = new GenericObjectPool.Config();
+        config.maxActive = parameters.maxActive;
+        config.maxIdle = parameters.maxIdle;
+        config.minIdle = parameters.minIdle;
+        config.maxWait = parameters.maxWaitMillis;
+        config.whenExhaustedAction = GenericObjectPool.WHEN_EXHAUSTED_BLOCK;
+        config.testOnBorrow = false;
+        config.testOnReturn = false;
+        enginePool = new GenericObjectPool<>(new GrobidDatacatPoolingFactory(parameters.preload), config);
+
+        // create the minimum number of idle engines now rather than on the first requests
+        for (int i = 0; i < parameters.minIdle; i++) {
+            try {
+                enginePool.addObject();
+            } catch (Exception e) {
+                throw new GrobidException("Cannot create the engines of the pool", e);
+            }
+        }
+        LOGGER.info("engine pool created: " + parameters.maxActive + " engines at most, " +
+            parameters.minIdle + " idle engines at least");
+    }
+
+    /**
+     * @return the engine pool, created with the default parameters if it has not been configured
+     */
+    public synchronized GenericObjectPool<EngineDatacat> getEnginePool() {
+        if (enginePool == null) {
+            configureEnginePool(new DatacatConfiguration.PoolParameters());
+        }
+        return enginePool;
+    }
+
+    /**
+     * Borrow an engine from the pool, waiting at most the borrow timeout of the pool when all the engines are
+     * in use.
+     *
+     * @throws NoSuchElementException if no engine became available before the timeout
+     */
+    public EngineDatacat borrowEngine() throws NoSuchElementException {
+        try {
+            return getEnginePool().borrowObject();
+        } catch (NoSuchElementException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new GrobidException("Cannot borrow an engine from the pool", e);
+        }
+    }
+
+    /**
+     * Give back an engine borrowed with borrowEngine().
+     */
+    public void returnEngine(EngineDatacat engine) {
+        if (engine == null)
+            return;
+        try {
+            getEnginePool().returnObject(engine);
+        } catch (Exception e) {
+            LOGGER.error("Cannot return the engine to the pool", e);
+        }
+    }
+
+    /**
+     * Remove from the pool an engine which failed in an unknown state.
+     */
+    public void invalidateEngine(EngineDatacat engine) {
+        if (engine == null)
+            return;
+        try {
+            getEnginePool().invalidateObject(engine);
+        } catch (Exception e) {
+            LOGGER.error("Cannot invalidate the engine", e);
+        }
+    }
+
+    private static void closeEnginePool() {
+        if (enginePool != null) {
+            try {
+                enginePool.close();
+            } catch (Exception e) {
+                LOGGER.warn("Cannot close the engine pool", e);
+            }
+            enginePool = null;
+        }
+    }
+
     /**
      * Creates a new instance of GrobidDatacatFactory.
      *
@@ -73,7 +177,8 @@ public class GrobidDatacatFactory extends GrobidFactory {
      * Resets this class and all its static fields. For instance sets the
      * current object to null.
      */
-    public static void reset() {
+    public static synchronized void reset() {
+        closeEnginePool();
         factory = null;
     }
 
@@ -0,0 +1,41 @@
+package org.grobid.core.factory;
+
+import org.apache.commons.pool.BasePoolableObjectFactory;
+import org.grobid.core.engines.EngineDatacat;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Creation and destruction of the EngineDatacat instances of the engine pool.
+ *
+ * The models are shared by all the engines (they are cached by model in the tagger factory), so creating an
+ * engine for the pool does not load the models again, and destroying an engine does not close anything: its
+ * taggers and the Crossref client are shared by the other engines and remain open for the whole process.
+ */
+public class GrobidDatacatPoolingFactory extends BasePoolableObjectFactory<EngineDatacat> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GrobidDatacatPoolingFactory.class);
+
+    private final boolean preload;
+
+    /**
+     * @param preload if true, the parsers of each engine are created when the engine is added to the pool
+     */
+    public GrobidDatacatPoolingFactory(boolean preload) {
+        this.preload = preload;
+    }
+
+    @Override
+    public EngineDatacat makeObject() throws Exception {
+        LOGGER.debug("creating a new engine for the pool");
+        EngineDatacat engine = GrobidDatacatFactory.getInstance().createEngine();
+        if (preload)
+            engine.getParsers().initAll();
+        return engine;
+    }
+
+    @Override
+    public void destroyObject(EngineDatacat engine) {
+        // EngineDatacat.close() would close the shared taggers and Crossref client, the engine is only dropped
+        LOGGER.debug("removing an engine from the pool");
+    }
+}
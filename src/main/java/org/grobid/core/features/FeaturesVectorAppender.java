@@ -0,0 +1,57 @@
+package org.grobid.core.features;
+
+import java.io.IOException;
+
+/**
+ * Helpers to write feature values directly into an output sink, without building intermediate strings.
+ */
+final class FeaturesVectorAppender {
+
+    private FeaturesVectorAppender() {
+    }
+
+    /**
+     * Append a separator followed by a string value, null values are written "null" as with string concatenation.
+     */
+    static void appendField(Appendable out, CharSequence value) throws IOException {
+        out.append(' ');
+        out.append(value == null ? "null" : value);
+    }
+
+    /**
+     * Append a separator followed by the first count characters of the value, the whole value if it is shorter
+     * (same as TextUtilities.prefix).
+     */
+    static void appendPrefix(Appendable out, String value, int count) throws IOException {
+        out.append(' ');
+        out.append(value, 0, Math.min(count, value.length()));
+    }
+
+    /**
+     * Append a separator followed by the last count characters of the value, the whole value if it is shorter
+     * (same as TextUtilities.suffix).
+     */
+    static void appendSuffix(Appendable out, String value, int count) throws IOException {
+        out.append(' ');
+        out.append(value, Math.max(0, value.length() - count), value.length());
+    }
+
+    static void appendFlag(Appendable out, boolean value) throws IOException {
+        out.append(' ');
+        out.append(value ? '1' : '0');
+    }
+
+    static void appendInt(Appendable out, int value) throws IOException {
+        out.append(' ');
+        if (out instanceof StringBuilder) {
+            ((StringBuilder) out).append(value);
+        } else if (value >= 0 && value < 10) {
+            out.append((char) ('0' + value));
+        } else if (value >= 10 && value < 100) {
+            out.append((char) ('0' + value / 10));
+            out.append((char) ('0' + value % 10));
+        } else {
+            out.append(Integer.toString(value));
+        }
+    }
+}
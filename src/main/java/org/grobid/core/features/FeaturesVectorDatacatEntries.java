@@ -3,6 +3,10 @@ package org.grobid.core.features;
 import org.grobid.core.layout.LayoutToken;
 import org.grobid.core.utilities.TextUtilities;
 
+import java.io.IOException;
+
+import static org.grobid.core.features.FeaturesVectorAppender.*;
+
 /**
  * Class for features used for full-medical-text parsing.
  * This class is taken and adapted from the FeaturesVectorFulltext class (@author Patrice Lopez)
@@ -51,109 +55,111 @@ public class FeaturesVectorDatacatEntries {
     public String printVector() {
         if (string == null) return null;
         if (string.length() == 0) return null;
-        StringBuffer res = new StringBuffer();
+        StringBuilder res = new StringBuilder(128);
+        writeTo(res);
+        return res.toString();
+    }
+
+    /**
+     * Write the feature vector followed by an end of line into a string builder.
+     *
+     * @return false if there is no token string, in which case nothing is written
+     */
+    public boolean writeTo(StringBuilder out) {
+        try {
+            return writeTo((Appendable) out);
+        } catch (IOException e) {
+            // not thrown by a StringBuilder
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Write the feature vector followed by an end of line directly into the output sink, without
+     * intermediate strings.
+     *
+     * @return false if there is no token string, in which case nothing is written
+     */
+    public boolean writeTo(Appendable res) throws IOException {
+        if (string == null) return false;
+        if (string.length() == 0) return false;
 
         // token string (1)
         res.append(string);
 
         // lowercase string
-        res.append(" " + string.toLowerCase());
+        appendField(res, string.toLowerCase());
 
         // prefix (4)
-        res.append(" " + TextUtilities.prefix(string, 1));
-        res.append(" " + TextUtilities.prefix(string, 2));
-        res.append(" " + TextUtilities.prefix(string, 3));
-        res.append(" " + TextUtilities.prefix(string, 4));
+        appendPrefix(res, string, 1);
+        appendPrefix(res, string, 2);
+        appendPrefix(res, string, 3);
+        appendPrefix(res, string, 4);
 
         // suffix (4)
-        res.append(" " + TextUtilities.suffix(string, 1));
-        res.append(" " + TextUtilities.suffix(string, 2));
-        res.append(" " + TextUtilities.suffix(string, 3));
-        res.append(" " + TextUtilities.suffix(string, 4));
+        appendSuffix(res, string, 1);
+        appendSuffix(res, string, 2);
+        appendSuffix(res, string, 3);
+        appendSuffix(res, string, 4);
 
         // at this stage, we have written 10 features
 
         // block information (1)
-        res.append(" " + blockStatus);
+        appendField(res, blockStatus);
 
         // line information (1)
-        res.append(" " + lineStatus);
+        appendField(res, lineStatus);
 
         // line position/identation (1)
-        res.append(" " + alignmentStatus);
+        appendField(res, alignmentStatus);
 
         // font information (1)
-        res.append(" " + fontStatus);
+        appendField(res, fontStatus);
 
         // font size information (1)
-        res.append(" " + fontSize);
+        appendField(res, fontSize);
 
         // string type information (3)
-        if (bold)
-            res.append(" 1");
-        else
-            res.append(" 0");
-
-        if (italic)
-            res.append(" 1");
-        else
-            res.append(" 0");
+        appendFlag(res, bold);
+        appendFlag(res, italic);
 
         // capitalisation (1)
         if (digit.equals("ALLDIGIT"))
-            res.append(" NOCAPS");
+            appendField(res, "NOCAPS");
         else
-            res.append(" " + capitalisation);
+            appendField(res, capitalisation);
 
         // digit information (1)
-        res.append(" " + digit);
+        appendField(res, digit);
 
         // character information (1)
-        if (singleChar)
-            res.append(" 1");
-        else
-            res.append(" 0");
+        appendFlag(res, singleChar);
 
         // at this stage, we have written 20 features
 
         // punctuation information (1)
-        res.append(" " + punctType); // in case the token is a punctuation (NO otherwise)
+        appendField(res, punctType); // in case the token is a punctuation (NO otherwise)
 
         // relative document position (1)
-        res.append(" " + relativeDocumentPosition);
+        appendInt(res, relativeDocumentPosition);
 
         // relative page position (1)
-        res.append(" " + relativePagePosition);
+        appendInt(res, relativePagePosition);
 
         // proximity of a graphic to the current block (2)
-        if (bitmapAround)
-            res.append(" 1");
-        else
-            res.append(" 0");
+        appendFlag(res, bitmapAround);
 
-        /*if (vectorAround)
-            res.append(" 1");
-        else
-            res.append(" 0");*/
+        //appendFlag(res, vectorAround);
 
         // space with previous block, discretised (1)
-        //res.append(" " + spacingWithPreviousBlock);
-        //res.append(" " + 0);
+        //appendInt(res, spacingWithPreviousBlock);
 
         // character density of the previous block, discretised (1)
-        //res.append(" " + characterDensity);
-        //res.append(" " + 0);
-
-        // label - for training data (1)
-        /*if (label != null)
-              res.append(" " + label + "\n");
-          else
-              res.append(" 0\n");
-          */
+        //appendInt(res, characterDensity);
 
-        res.append("\n");
+        res.append('\n');
 
-        return res.toString();
+        return true;
     }
 
-}
\ No newline at end of file
+}
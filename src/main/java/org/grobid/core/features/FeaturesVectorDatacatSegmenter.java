@@ -3,6 +3,10 @@ package org.grobid.core.features;
 import org.grobid.core.layout.LayoutToken;
 import org.grobid.core.utilities.TextUtilities;
 
+import java.io.IOException;
+
+import static org.grobid.core.features.FeaturesVectorAppender.*;
+
 /**
  * Class for features used for high level segmentation of a monograph.
  *
@@ -53,174 +57,188 @@ public class FeaturesVectorDatacatSegmenter {
     public int spacingWithPreviousBlock = 0; // discretized
     public int characterDensity = 0; // discretized
 
+    /**
+     * Set all the fields back to their initial values, so that the same instance can be used for another line.
+     */
+    public void reset() {
+        token = null;
+        line = null;
+        block = null;
+        string = null;
+        secondString = null;
+        label = null;
+        blockStatus = null;
+        lineStatus = null;
+        fontStatus = null;
+        fontSize = null;
+        pageStatus = null;
+        alignmentStatus = null;
+        bold = false;
+        italic = false;
+        capitalisation = null;
+        digit = null;
+        singleChar = false;
+        properName = false;
+        commonName = false;
+        firstName = false;
+        locationName = false;
+        year = false;
+        month = false;
+        email = false;
+        http = false;
+        punctType = null;
+        relativeDocumentPosition = -1;
+        relativePagePosition = -1;
+        relativePagePositionChar = -1;
+        punctuationProfile = null;
+        firstPageBlock = false;
+        lastPageBlock = false;
+        lineLength = 0;
+        blockLength = 0;
+        bitmapAround = false;
+        vectorAround = false;
+        inMainArea = true;
+        repetitivePattern = false;
+        firstRepetitivePattern = false;
+        spacingWithPreviousBlock = 0;
+        characterDensity = 0;
+    }
+
     public String printVector() {
         if (string == null) return null;
         if (string.length() == 0) return null;
-        StringBuffer res = new StringBuffer();
+        StringBuilder res = new StringBuilder(128);
+        writeTo(res);
+        return res.toString();
+    }
+
+    /**
+     * Write the feature vector followed by an end of line into a string builder.
+     *
+     * @return false if there is no token string, in which case nothing is written
+     */
+    public boolean writeTo(StringBuilder out) {
+        try {
+            return writeTo((Appendable) out);
+        } catch (IOException e) {
+            // not thrown by a StringBuilder
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Write the feature vector followed by an end of line directly into the output sink, without
+     * intermediate strings.
+     *
+     * @return false if there is no token string, in which case nothing is written
+     */
+    public boolean writeTo(Appendable res) throws IOException {
+        if (string == null) return false;
+        if (string.length() == 0) return false;
 
         // token string (1)
         res.append(string);
 
         // second token string
         if (secondString != null)
-            res.append(" " + secondString);
+            appendField(res, secondString);
         else
-            res.append(" " + string);
+            appendField(res, string);
 
         // lowercase first string
-        res.append(" " + string.toLowerCase());
+        appendField(res, string.toLowerCase());
 
         // prefix (4)
-        res.append(" " + TextUtilities.prefix(string, 1));
-        res.append(" " + TextUtilities.prefix(string, 2));
-        res.append(" " + TextUtilities.prefix(string, 3));
-        res.append(" " + TextUtilities.prefix(string, 4));
+        appendPrefix(res, string, 1);
+        appendPrefix(res, string, 2);
+        appendPrefix(res, string, 3);
+        appendPrefix(res, string, 4);
 
         // block information (1)
         if (blockStatus != null)
-            res.append(" " + blockStatus);
+            appendField(res, blockStatus);
 
         // line information (1)
         if (lineStatus != null)
-            res.append(" " + lineStatus);
+            appendField(res, lineStatus);
 
         // page information (1)
-        res.append(" " + pageStatus);
+        appendField(res, pageStatus);
 
         // font information (1)
-        res.append(" " + fontStatus);
+        appendField(res, fontStatus);
 
         // font size information (1)
-        res.append(" " + fontSize);
+        appendField(res, fontSize);
 
         // string type information (3)
-        if (bold)
-            res.append(" 1");
-        else
-            res.append(" 0");
-
-        if (italic)
-            res.append(" 1");
-        else
-            res.append(" 0");
+        appendFlag(res, bold);
+        appendFlag(res, italic);
 
         // capitalisation (1)
         if (digit.equals("ALLDIGIT"))
-            res.append(" NOCAPS");
+            appendField(res, "NOCAPS");
         else
-            res.append(" " + capitalisation);
+            appendField(res, capitalisation);
 
         // digit information (1)
-        res.append(" " + digit);
+        appendField(res, digit);
 
         // character information (1)
-        if (singleChar)
-            res.append(" 1");
-        else
-            res.append(" 0");
+        appendFlag(res, singleChar);
 
         // lexical information (7)
-        if (properName)
-            res.append(" 1");
-        else
-            res.append(" 0");
-
-        if (commonName)
-            res.append(" 1");
-        else
-            res.append(" 0");
-
-        if (firstName)
-            res.append(" 1");
-        else
-            res.append(" 0");
-
-        if (year)
-            res.append(" 1");
-        else
-            res.append(" 0");
-
-        if (month)
-            res.append(" 1");
-        else
-            res.append(" 0");
-
-        if (email)
-            res.append(" 1");
-        else
-            res.append(" 0");
-
-        if (http)
-            res.append(" 1");
-        else
-            res.append(" 0");
+        appendFlag(res, properName);
+        appendFlag(res, commonName);
+        appendFlag(res, firstName);
+        appendFlag(res, year);
+        appendFlag(res, month);
+        appendFlag(res, email);
+        appendFlag(res, http);
 
         // punctuation information (1)
         if (punctType != null)
-            res.append(" " + punctType); // in case the token is a punctuation (NO otherwise)
+            appendField(res, punctType); // in case the token is a punctuation (NO otherwise)
 
         // relative document position (1)
-        res.append(" " + relativeDocumentPosition);
+        appendInt(res, relativeDocumentPosition);
 
         // relative page position coordinate (1)
-        res.append(" " + relativePagePosition);
+        appendInt(res, relativePagePosition);
 
         // relative page position characters (1)
-        //res.append(" " + relativePagePositionChar);
+        //appendInt(res, relativePagePositionChar);
 
         // punctuation profile
         if ( (punctuationProfile == null) || (punctuationProfile.length() == 0) ) {
             // string profile
-            res.append(" no");
+            appendField(res, "no");
             // number of punctuation symbols in the line
-            res.append(" 0");
+            appendInt(res, 0);
         }
         else {
             // string profile
-            res.append(" " + punctuationProfile);
+            appendField(res, punctuationProfile);
             // number of punctuation symbols in the line
-            res.append(" "+punctuationProfile.length());
+            appendInt(res, punctuationProfile.length());
         }
 
         // current line length on a predefined scale and relative to the longest line of the current block
-        res.append(" " + lineLength);
+        appendInt(res, lineLength);
 
         // current block length on a predefined scale and relative to the longest block of the current page
-        //res.append(" " + blockLength);
+        //appendInt(res, blockLength);
 
-        if (bitmapAround) {
-            res.append(" 1");
-        } else {
-            res.append(" 0");
-        }
-
-        if (vectorAround) {
-            res.append(" 1");
-        } else {
-            res.append(" 0");
-        }
-
-        if (repetitivePattern) {
-            res.append(" 1");
-        } else {
-            res.append(" 0");
-        }
-
-        if (firstRepetitivePattern) {
-            res.append(" 1");
-        } else {
-            res.append(" 0");
-        }
+        appendFlag(res, bitmapAround);
+        appendFlag(res, vectorAround);
+        appendFlag(res, repetitivePattern);
+        appendFlag(res, firstRepetitivePattern);
 
         // if the block is in the page main area (1)
-        if (inMainArea) {
-            res.append(" 1");
-        } else {
-            res.append(" 0");
-        }
+        appendFlag(res, inMainArea);
 
-        res.append("\n");
+        res.append('\n');
 
-        return res.toString();
+        return true;
     }
-}
\ No newline at end of file
+}
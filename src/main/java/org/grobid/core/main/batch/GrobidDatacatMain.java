@@ -2,6 +2,8 @@ package org.grobid.core.main.batch;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.grobid.core.document.DatacatDocumentCache;
+import org.grobid.core.engines.DatacatLabelCache;
 import org.grobid.core.engines.EngineDatacatParsers;
 import org.grobid.core.engines.ProcessEngine;
 import org.grobid.core.engines.ProcessEngineDatacat;
@@ -100,6 +102,16 @@ public class GrobidDatacatMain {
             for (ModelParameters theModel : datacatConfiguration.getModels())
                 GrobidProperties.getInstance().addModel(theModel);
 
+            DatacatConfiguration.CacheParameters cache = datacatConfiguration.getCache();
+            if (cache != null && cache.isEnabled()) {
+                DatacatDocumentCache.configure(new File(cache.path, "pdfalto"), cache.maxSizeMB * 1024L * 1024L);
+                DatacatLabelCache.configure(new File(cache.path, "labels"), cache.labelsMaxSizeMB * 1024L * 1024L);
+            }
+
+            DatacatConfiguration.ArtifactParameters artifacts = datacatConfiguration.getArtifacts();
+            if (artifacts != null)
+                DatacatArtifacts.configure(artifacts.compress);
+
             LibraryLoader.load();
         } catch (final Exception exp) {
             System.err.println("grobid-datacat initialisation failed: " + exp);
@@ -117,9 +129,13 @@ public class GrobidDatacatMain {
         help.append("-gH: gives the path to grobid home directory.\n");
         help.append("-dIn: gives the path to the directory where the files to be processed are located, to be used only when the called method needs it.\n");
         help.append("-dOut: gives the path to the directory where the result files will be saved. The default output directory is the curent directory.\n");
-        help.append("-r: recursive directory processing, default processing is not recursive.\n");
+        help.append("-r: recursive directory processing, default processing is not recursive. The results are written in the same sub-directories as their input files.\n");
+        help.append("-include: glob of the input files to be processed relatively to the input directory, e.g. \"1897/**.pdf\", can be repeated. By default all the PDF files are processed.\n");
+        help.append("-exclude: glob of the input files or directories to be ignored relatively to the input directory, can be repeated.\n");
+        help.append("-nbThreads: number of PDF files processed in parallel by the batch commands, default is 1.\n");
         help.append("-ignoreAssets: do not extract and save the PDF assets (bitmaps, vector graphics), by default the assets are extracted and saved.\n");
         help.append("-teiCoordinates: output a subset of the identified structures with coordinates in the original PDF, by default no coordinates are present.\n");
+        help.append("-catalogueIdFromName: identify the catalogues of the JSON Lines records (processCatalogueToJsonl) by the name of their PDF file, by default they are identified by the MD5 of the PDF file.\n");
         help.append("-segmentSentences: add sentence segmentation level structures for paragraphs in the TEI XML result, by default no sentence segmentation is done.\n");
         help.append("-s: is the parameter used for process using string as input and not file.\n");
         help.append("-exe: gives the command to execute. The value should be one of these:\n");
@@ -181,6 +197,33 @@ public class GrobidDatacatMain {
                     gbdArgs.setRecursive(true);
                     continue;
                 }
+                if (currArg.equals("-include")) {
+                    if (pArgs[i + 1] != null) {
+                        gbdArgs.addInclude(pArgs[i + 1]);
+                    }
+                    i++;
+                    continue;
+                }
+                if (currArg.equals("-exclude")) {
+                    if (pArgs[i + 1] != null) {
+                        gbdArgs.addExclude(pArgs[i + 1]);
+                    }
+                    i++;
+                    continue;
+                }
+                if (currArg.equals("-nbThreads")) {
+                    if (pArgs[i + 1] != null) {
+                        try {
+                            gbdArgs.setNbThreads(Integer.parseInt(pArgs[i + 1]));
+                        } catch (NumberFormatException e) {
+                            System.err.println("-nbThreads value should be an integer: " + pArgs[i + 1]);
+                            result = false;
+                            break;
+                        }
+                    }
+                    i++;
+                    continue;
+                }
                 if (currArg.equals("-ignoreAssets")) {
                     gbdArgs.setSaveAssets(false);
                     continue;
@@ -189,6 +232,10 @@ public class GrobidDatacatMain {
                     gbdArgs.setTeiCoordinates(true);
                     continue;
                 }
+                if (currArg.equals("-catalogueIdFromName")) {
+                    gbdArgs.setCatalogueIdFromName(true);
+                    continue;
+                }
                 if (currArg.equals("-segmentSentences")) {
                     gbdArgs.setSegmentSentences(true);
                     continue;
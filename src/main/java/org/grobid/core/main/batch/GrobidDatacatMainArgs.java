@@ -1,9 +1,22 @@
 package org.grobid.core.main.batch;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class GrobidDatacatMainArgs extends GrobidMainArgs {
     // French is the default language
     public String lang = "fr";
 
+    // number of PDF processed in parallel by the batch commands
+    private int nbThreads = 1;
+
+    // globs of the input files to be processed and to be ignored, relative to the input directory
+    private List<String> includes = new ArrayList<>();
+    private List<String> excludes = new ArrayList<>();
+
+    // identify the catalogues of the JSON Lines records by the name of their PDF instead of its MD5
+    private boolean catalogueIdFromName = false;
+
     public String getLang() {
         return lang;
     }
@@ -11,4 +24,36 @@ public class GrobidDatacatMainArgs extends GrobidMainArgs {
     public void setLang(String lang) {
         this.lang = lang;
     }
+
+    public int getNbThreads() {
+        return nbThreads;
+    }
+
+    public void setNbThreads(int nbThreads) {
+        this.nbThreads = nbThreads;
+    }
+
+    public List<String> getIncludes() {
+        return includes;
+    }
+
+    public void addInclude(String include) {
+        includes.add(include);
+    }
+
+    public List<String> getExcludes() {
+        return excludes;
+    }
+
+    public void addExclude(String exclude) {
+        excludes.add(exclude);
+    }
+
+    public boolean isCatalogueIdFromName() {
+        return catalogueIdFromName;
+    }
+
+    public void setCatalogueIdFromName(boolean catalogueIdFromName) {
+        this.catalogueIdFromName = catalogueIdFromName;
+    }
 }
\ No newline at end of file
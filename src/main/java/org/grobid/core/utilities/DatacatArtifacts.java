@@ -0,0 +1,92 @@
+package org.grobid.core.utilities;
+
+import org.grobid.core.exceptions.GrobidResourceException;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writing and reading of the text artifacts of the training data generation: the featured sequences
+ * (.training.segmentation, .training.bodySegmentation.datacat.text) and the raw text (.datacat.rawtxt).
+ *
+ * These files are large and very repetitive, when the compression is enabled (artifacts.compress in
+ * grobid-datacat.yaml) they are written with gzip and get a .gz extension. The readers decompress the files
+ * ending with .gz, and findArtifact looks for the plain and the compressed file, so that the trainers accept
+ * both forms in the same corpus. An artifact must exist in a single form: openWriter removes the other form
+ * of the file it writes, and findArtifact fails when both forms exist.
+ */
+public class DatacatArtifacts {
+
+    public static final String GZIP_EXTENSION = ".gz";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static volatile boolean compress = false;
+
+    private DatacatArtifacts() {
+    }
+
+    public static void configure(boolean compressArtifacts) {
+        compress = compressArtifacts;
+    }
+
+    public static boolean isCompressed() {
+        return compress;
+    }
+
+    /**
+     * @param file the artifact without compression extension
+     * @return the file actually written by openWriter, with the .gz extension when the compression is enabled
+     */
+    public static File getOutputFile(File file) {
+        return compress ? new File(file.getPath() + GZIP_EXTENSION) : file;
+    }
+
+    /**
+     * Open a buffered UTF-8 writer on an artifact, compressed if the compression is enabled (see getOutputFile).
+     * The artifact previously written in the other form, if any, is removed.
+     *
+     * @param file the artifact without compression extension
+     */
+    public static Writer openWriter(File file) throws IOException {
+        File outputFile = getOutputFile(file);
+        File otherForm = compress ? file : new File(file.getPath() + GZIP_EXTENSION);
+        if (otherForm.exists() && !otherForm.delete())
+            throw new IOException("Cannot remove the previous artifact " + otherForm.getPath());
+        OutputStream output = new FileOutputStream(outputFile, false);
+        if (compress)
+            output = new GZIPOutputStream(output, BUFFER_SIZE);
+        else
+            output = new BufferedOutputStream(output, BUFFER_SIZE);
+        return new OutputStreamWriter(output, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Open a buffered UTF-8 reader on an artifact, decompressed if its name ends with .gz.
+     */
+    public static BufferedReader openReader(File file) throws IOException {
+        InputStream input = new FileInputStream(file);
+        if (file.getName().endsWith(GZIP_EXTENSION))
+            input = new GZIPInputStream(input, BUFFER_SIZE);
+        return new BufferedReader(new InputStreamReader(input, StandardCharsets.UTF_8), BUFFER_SIZE);
+    }
+
+    /**
+     * @param file the artifact without compression extension
+     * @return the plain or the compressed file, null if none exists
+     * @throws GrobidResourceException if both the plain and the compressed file exist
+     */
+    public static File findArtifact(File file) {
+        File compressed = new File(file.getPath() + GZIP_EXTENSION);
+        if (file.exists() && compressed.exists())
+            throw new GrobidResourceException("The artifact " + file.getPath() + " exists both plain and compressed, " +
+                "remove the stale one");
+        if (file.exists())
+            return file;
+        if (compressed.exists())
+            return compressed;
+        return null;
+    }
+}
@@ -38,6 +38,21 @@ public class DatacatConfiguration {
     // sequence labeling models
     public List<ModelParameters> models;
 
+    // on-disk caches, disabled when no path is set
+    private CacheParameters cache;
+
+    // REST service
+    private ServiceParameters service;
+
+    // pool of engines for multi-threaded processing
+    private PoolParameters pool;
+
+    // warm-up of the models at startup
+    private WarmUpParameters warmUp;
+
+    // training data artifacts
+    private ArtifactParameters artifacts;
+
     public String getGrobidHome() {
         return this.grobidHome;
     }
@@ -63,4 +78,100 @@ public class DatacatConfiguration {
         this.dataPath = dataPath;
     }
 
+    public CacheParameters getCache() {
+        return cache;
+    }
+
+    public void setCache(CacheParameters cache) {
+        this.cache = cache;
+    }
+
+    public ServiceParameters getService() {
+        return service;
+    }
+
+    public void setService(ServiceParameters service) {
+        this.service = service;
+    }
+
+    public PoolParameters getPool() {
+        return pool;
+    }
+
+    public void setPool(PoolParameters pool) {
+        this.pool = pool;
+    }
+
+    public WarmUpParameters getWarmUp() {
+        return warmUp;
+    }
+
+    public void setWarmUp(WarmUpParameters warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    public ArtifactParameters getArtifacts() {
+        return artifacts;
+    }
+
+    public void setArtifacts(ArtifactParameters artifacts) {
+        this.artifacts = artifacts;
+    }
+
+    public static class ArtifactParameters {
+        // write the featured sequences and the raw text with gzip, see DatacatArtifacts
+        public boolean compress = false;
+    }
+
+    public static class WarmUpParameters {
+        public boolean enabled = true;
+
+        // maximum number of iterations of each warm-up step
+        public int maxIterations = 20;
+
+        // optional PDF processed during the warm-up, to also warm up pdfalto and the featurizers
+        public String pdf;
+    }
+
+    public static class PoolParameters {
+        // maximum number of engines in use at the same time
+        public int maxActive = Runtime.getRuntime().availableProcessors();
+
+        public int maxIdle = Runtime.getRuntime().availableProcessors();
+
+        // number of engines created with the pool and kept ready
+        public int minIdle = 1;
+
+        // maximum waiting time to borrow an engine when they are all in use, in milliseconds
+        public long maxWaitMillis = 60000;
+
+        // create the parsers, and load the models, when an engine is added to the pool
+        public boolean preload = true;
+    }
+
+    public static class ServiceParameters {
+        public int port = 8060;
+
+        // maximum number of documents processed concurrently, further requests are rejected with a 503
+        public int maxConcurrency = Runtime.getRuntime().availableProcessors();
+
+        // delay suggested to the clients of a saturated service before retrying, in seconds
+        public int retryAfterSeconds = 2;
+    }
+
+    public static class CacheParameters {
+        // root directory of the caches
+        public String path;
+
+        // maximum size of the pdfalto cache in MB
+        public long maxSizeMB = 2048;
+
+        // maximum size of the label cache in MB
+        public long labelsMaxSizeMB = 512;
+
+        public boolean isEnabled() {
+            return path != null && path.trim().length() > 0;
+        }
+    }
+
 }
\ No newline at end of file
@@ -0,0 +1,129 @@
+package org.grobid.core.utilities;
+
+import org.grobid.core.document.Document;
+import org.grobid.core.layout.Block;
+import org.grobid.core.layout.GraphicObject;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-page index of the graphic objects of a document, to find the graphics connected to a block without
+ * scanning all the graphics of the document for every block.
+ *
+ * A graphic object is connected to a block when, on the same page, its bottom is close to the top of the block
+ * or its top is close to the bottom of the block, as in Document.getConnectedGraphics(). Only vertical positions
+ * are involved, so the index keeps for each page the graphics sorted by top and by bottom position, and a query
+ * is two binary searches. The index is built once per featurization of a document.
+ */
+public class DatacatGraphicObjectIndex {
+
+    // same distance as the one used by Document.getConnectedGraphics()
+    public static final double MIN_DISTANCE = 5.0;
+
+    private final Map<Integer, PageIndex> pages = new HashMap<>();
+
+    public DatacatGraphicObjectIndex(Document doc) {
+        List<GraphicObject> images = doc.getImages();
+        if (images == null)
+            return;
+        Map<Integer, List<Integer>> imagesPerPage = new HashMap<>();
+        for (int i = 0; i < images.size(); i++) {
+            GraphicObject image = images.get(i);
+            imagesPerPage.computeIfAbsent(image.getPage(), page -> new ArrayList<>()).add(i);
+        }
+        for (Map.Entry<Integer, List<Integer>> entry : imagesPerPage.entrySet()) {
+            pages.put(entry.getKey(), new PageIndex(images, entry.getValue()));
+        }
+    }
+
+    /**
+     * @return the graphic objects connected to the block in the order of the document, null if there is none
+     * (same result as Document.getConnectedGraphics(block, doc))
+     */
+    public List<GraphicObject> getConnectedGraphics(Block block) {
+        PageIndex page = pages.get(block.getPageNumber());
+        if (page == null)
+            return null;
+        return page.connected(block.getY(), block.getY() + block.getHeight());
+    }
+
+    private static class PageIndex {
+        // graphics of the page sorted by bottom position, and sorted by top position
+        private final GraphicObject[] byBottom;
+        private final double[] bottoms;
+        private final int[] byBottomRank;
+        private final GraphicObject[] byTop;
+        private final double[] tops;
+        private final int[] byTopRank;
+
+        PageIndex(List<GraphicObject> images, List<Integer> ranks) {
+            Integer[] sorted = ranks.toArray(new Integer[0]);
+
+            Arrays.sort(sorted, Comparator.comparingDouble(i -> bottom(images.get(i))));
+            byBottom = new GraphicObject[sorted.length];
+            bottoms = new double[sorted.length];
+            byBottomRank = new int[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                byBottom[i] = images.get(sorted[i]);
+                bottoms[i] = bottom(byBottom[i]);
+                byBottomRank[i] = sorted[i];
+            }
+
+            Arrays.sort(sorted, Comparator.comparingDouble(i -> images.get(i).getY()));
+            byTop = new GraphicObject[sorted.length];
+            tops = new double[sorted.length];
+            byTopRank = new int[sorted.length];
+            for (int i = 0; i < sorted.length; i++) {
+                byTop[i] = images.get(sorted[i]);
+                tops[i] = byTop[i].getY();
+                byTopRank[i] = sorted[i];
+            }
+        }
+
+        private static double bottom(GraphicObject image) {
+            return image.getY() + image.getHeight();
+        }
+
+        List<GraphicObject> connected(double blockTop, double blockBottom) {
+            // rank in the document -> graphic, to keep the document order and avoid duplicates
+            Map<Integer, GraphicObject> found = null;
+            for (int i = firstAbove(bottoms, blockTop - MIN_DISTANCE);
+                 i < bottoms.length && bottoms[i] < blockTop + MIN_DISTANCE; i++) {
+                if (Math.abs(bottoms[i] - blockTop) < MIN_DISTANCE) {
+                    if (found == null)
+                        found = new TreeMap<>();
+                    found.put(byBottomRank[i], byBottom[i]);
+                }
+            }
+            for (int i = firstAbove(tops, blockBottom - MIN_DISTANCE);
+                 i < tops.length && tops[i] < blockBottom + MIN_DISTANCE; i++) {
+                if (Math.abs(tops[i] - blockBottom) < MIN_DISTANCE) {
+                    if (found == null)
+                        found = new TreeMap<>();
+                    found.put(byTopRank[i], byTop[i]);
+                }
+            }
+            return (found == null) ? null : new ArrayList<>(found.values());
+        }
+
+        // index of the first value strictly greater than the bound
+        private static int firstAbove(double[] values, double bound) {
+            int low = 0;
+            int high = values.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (values[middle] <= bound)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return low;
+        }
+    }
+}
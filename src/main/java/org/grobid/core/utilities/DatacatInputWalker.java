@@ -0,0 +1,156 @@
+package org.grobid.core.utilities;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Discovery of the input files of the batch commands.
+ *
+ * The input directory is walked with Files.walkFileTree and every matching file is handed to the visitor as
+ * soon as it is found, no list of the input files is built, so that the processing of a large archive starts
+ * immediately and the memory does not depend on the number of files. The visitor also gets the directory of
+ * the file relative to the input directory, which is used to mirror the input tree in the output directory.
+ *
+ * The include and exclude patterns are globs (see FileSystem.getPathMatcher) applied to the path relative to
+ * the input directory, for instance "**.pdf" or "1897/*.pdf". A file is processed if it matches one of the
+ * include patterns and none of the exclude patterns, a directory matching an exclude pattern is not visited.
+ */
+public class DatacatInputWalker {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatacatInputWalker.class);
+
+    // all the PDF files, at any depth
+    public static final String DEFAULT_INCLUDE = "**.{pdf,PDF}";
+
+    /**
+     * Called for every input file, in the order of the walk.
+     */
+    public interface InputVisitor {
+        /**
+         * @param inputFile         the file to be processed
+         * @param relativeDirectory the directory of the file relative to the input directory, empty for the files
+         *                          directly under the input directory
+         */
+        void visit(File inputFile, String relativeDirectory) throws Exception;
+    }
+
+    private final boolean recursive;
+    private final List<PathMatcher> includes = new ArrayList<>();
+    private final List<PathMatcher> excludes = new ArrayList<>();
+
+    /**
+     * @param recursive       if false, only the files directly under the input directory are visited
+     * @param includePatterns globs of the files to be processed, all the PDF files if null or empty
+     * @param excludePatterns globs of the files and directories to be ignored, can be null
+     */
+    public DatacatInputWalker(boolean recursive, List<String> includePatterns, List<String> excludePatterns) {
+        this.recursive = recursive;
+        FileSystem fileSystem = FileSystems.getDefault();
+        if (includePatterns == null || includePatterns.isEmpty())
+            includePatterns = Collections.singletonList(DEFAULT_INCLUDE);
+        for (String pattern : includePatterns) {
+            includes.add(fileSystem.getPathMatcher("glob:" + pattern));
+        }
+        if (excludePatterns != null) {
+            for (String pattern : excludePatterns) {
+                excludes.add(fileSystem.getPathMatcher("glob:" + pattern));
+            }
+        }
+    }
+
+    /**
+     * Non recursive walker of all the PDF files of a directory.
+     */
+    public DatacatInputWalker() {
+        this(false, null, null);
+    }
+
+    public boolean isRecursive() {
+        return recursive;
+    }
+
+    /**
+     * Walk the input directory and pass every matching file to the visitor. A file which cannot be read is
+     * logged and skipped, an exception of the visitor stops the walk.
+     *
+     * @return the number of files passed to the visitor
+     */
+    public int walk(File inputDirectory, final InputVisitor visitor) throws IOException {
+        final Path root = inputDirectory.toPath();
+        final int[] nbFiles = {0};
+        Files.walkFileTree(root, EnumSet.noneOf(FileVisitOption.class), recursive ? Integer.MAX_VALUE : 1,
+            new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                    if (!dir.equals(root) && matchesAny(excludes, root.relativize(dir)))
+                        return FileVisitResult.SKIP_SUBTREE;
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) throws IOException {
+                    if (!attrs.isRegularFile())
+                        return FileVisitResult.CONTINUE;
+                    Path relativePath = root.relativize(file);
+                    if (!matchesAny(includes, relativePath) || matchesAny(excludes, relativePath))
+                        return FileVisitResult.CONTINUE;
+
+                    Path relativeDirectory = relativePath.getParent();
+                    try {
+                        visitor.visit(file.toFile(), relativeDirectory == null ? "" : relativeDirectory.toString());
+                    } catch (IOException | RuntimeException e) {
+                        throw e;
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while visiting " + file);
+                    } catch (Exception e) {
+                        throw new IOException("Cannot process the input file " + file, e);
+                    }
+                    nbFiles[0]++;
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    LOGGER.warn("Cannot read the input file " + file + ", it is ignored", e);
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        return nbFiles[0];
+    }
+
+    /**
+     * @return the path of an input file relative to the input directory, with '/' as separator
+     */
+    public static String getInputPath(File inputFile, String relativeDirectory) {
+        if (relativeDirectory.isEmpty())
+            return inputFile.getName();
+        return relativeDirectory.replace(File.separatorChar, '/') + "/" + inputFile.getName();
+    }
+
+    /**
+     * @return the output directory of the files of a relative directory, mirroring the input tree
+     */
+    public static String getOutputPath(String outputRoot, String relativeDirectory) {
+        if (relativeDirectory.isEmpty())
+            return outputRoot;
+        return outputRoot + File.separator + relativeDirectory;
+    }
+
+    private static boolean matchesAny(List<PathMatcher> matchers, Path path) {
+        for (PathMatcher matcher : matchers) {
+            if (matcher.matches(path))
+                return true;
+        }
+        return false;
+    }
+}
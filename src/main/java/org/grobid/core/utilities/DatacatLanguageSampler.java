@@ -0,0 +1,106 @@
+package org.grobid.core.utilities;
+
+import org.grobid.core.document.Document;
+import org.grobid.core.lang.Language;
+import org.grobid.core.layout.Block;
+import org.grobid.core.layout.Page;
+
+import java.util.List;
+
+/**
+ * Language identification on a bounded sample of a document.
+ *
+ * The sample is taken from a few pages spread over the whole document rather than from its beginning only,
+ * because the first pages of a sale catalogue are often a cover or a list of experts with very little text.
+ * The sample size does not depend on the size of the document, so the cost of language identification is
+ * constant whatever the number of pages of the catalogue.
+ */
+public class DatacatLanguageSampler {
+
+    // maximum length of the sample, a few hundred characters are enough for detecting the language but the
+    // sample is spread over several pages, some of them with only names or captions
+    public static final int DEFAULT_SAMPLE_LENGTH = 2000;
+
+    public static final int DEFAULT_NB_SAMPLED_PAGES = 5;
+
+    // language used when the identification fails
+    public static final String DEFAULT_LANG = "fr";
+
+    private final int sampleLength;
+    private final int nbSampledPages;
+
+    public DatacatLanguageSampler() {
+        this(DEFAULT_SAMPLE_LENGTH, DEFAULT_NB_SAMPLED_PAGES);
+    }
+
+    public DatacatLanguageSampler(int sampleLength, int nbSampledPages) {
+        this.sampleLength = sampleLength;
+        this.nbSampledPages = Math.max(1, nbSampledPages);
+    }
+
+    /**
+     * @return a text sample of at most sampleLength characters taken from pages evenly spread over the document
+     */
+    public String sample(Document doc) {
+        StringBuilder sample = new StringBuilder(sampleLength);
+        List<Page> pages = doc.getPages();
+        if (pages == null || pages.isEmpty()) {
+            appendBlocks(sample, doc.getBlocks(), sampleLength);
+            return sample.toString();
+        }
+
+        int nbPages = pages.size();
+        int nbSelected = Math.min(nbSampledPages, nbPages);
+        int quota = sampleLength / nbSelected;
+        boolean[] sampled = new boolean[nbPages];
+        for (int i = 0; i < nbSelected; i++) {
+            // middle of the i-th slice of the document
+            int pageIndex = (int) (((i + 0.5) * nbPages) / nbSelected);
+            appendBlocks(sample, pages.get(pageIndex).getBlocks(), Math.min(sampleLength, sample.length() + quota));
+            sampled[pageIndex] = true;
+        }
+
+        // sparse pages: complete the sample in reading order with the pages not sampled yet
+        for (int i = 0; i < nbPages && sample.length() < sampleLength / 2; i++) {
+            if (!sampled[i])
+                appendBlocks(sample, pages.get(i).getBlocks(), sampleLength);
+        }
+        return sample.toString();
+    }
+
+    /**
+     * @return the language code identified on the document sample, or defaultLang if it cannot be identified
+     */
+    public String detectLanguage(Document doc, String defaultLang) {
+        String sample = sample(doc);
+        if (sample.trim().length() == 0)
+            return defaultLang;
+        Language langID = LanguageUtilities.getInstance().runLanguageId(sample);
+        if (langID != null && langID.getLang() != null) {
+            return langID.getLang();
+        }
+        return defaultLang;
+    }
+
+    public String detectLanguage(Document doc) {
+        return detectLanguage(doc, DEFAULT_LANG);
+    }
+
+    private static void appendBlocks(StringBuilder sample, List<Block> blocks, int maxLength) {
+        if (blocks == null)
+            return;
+        for (Block block : blocks) {
+            if (sample.length() >= maxLength)
+                return;
+            String text = block.getText();
+            if (text == null || text.contains("@IMAGE") || text.contains("@PAGE"))
+                continue;
+            text = text.trim();
+            if (text.length() == 0)
+                continue;
+            if (sample.length() > 0)
+                sample.append(' ');
+            sample.append(text, 0, Math.min(text.length(), Math.max(0, maxLength - sample.length())));
+        }
+    }
+}
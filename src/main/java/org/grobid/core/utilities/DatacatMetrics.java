@@ -0,0 +1,227 @@
+package org.grobid.core.utilities;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Timers and counters of the processing stages of grobid-datacat, tagged by model.
+ *
+ * A stage is timed with a try-with-resources block:
+ * <pre>
+ * try (DatacatMetrics.Sample sample = DatacatMetrics.time(DatacatMetrics.LABELING, "datacat-segmenter")) {
+ *     ...
+ * }
+ * </pre>
+ * The values are cumulated since the start of the JVM and can be exported as a JSON snapshot or in the
+ * Prometheus text format. Recording a value is a few atomic additions, it can be done from any thread.
+ */
+public class DatacatMetrics {
+
+    // stages
+    public static final String PDFALTO = "pdfalto";
+    public static final String TOKENIZATION = "tokenization";
+    public static final String STATISTICS = "statistics";
+    public static final String FEATURIZATION = "featurization";
+    public static final String LABELING = "labeling";
+    public static final String SERIALIZATION = "serialization";
+    public static final String ASSETS = "assets";
+
+    // counters
+    public static final String DOCUMENTS = "documents";
+    public static final String FAILED_DOCUMENTS = "failed_documents";
+    public static final String PDFALTO_CACHE_HITS = "pdfalto_cache_hits";
+    public static final String PDFALTO_CACHE_MISSES = "pdfalto_cache_misses";
+    public static final String LABEL_CACHE_HITS = "label_cache_hits";
+    public static final String LABEL_CACHE_MISSES = "label_cache_misses";
+
+    // tag of the stages which do not depend on a model
+    public static final String NO_MODEL = "";
+
+    private static final DatacatMetrics instance = new DatacatMetrics();
+
+    private final ConcurrentMap<String, TimerStats> timers = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, LongAdder> counters = new ConcurrentHashMap<>();
+
+    private static class TimerStats {
+        final String stage;
+        final String model;
+        final LongAdder count = new LongAdder();
+        final LongAdder totalNanos = new LongAdder();
+        final AtomicLong maxNanos = new AtomicLong();
+
+        TimerStats(String stage, String model) {
+            this.stage = stage;
+            this.model = model;
+        }
+
+        void record(long nanos) {
+            count.increment();
+            totalNanos.add(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+    }
+
+    /**
+     * A running measure of a stage, the duration is recorded when it is closed.
+     */
+    public static class Sample implements AutoCloseable {
+        private final TimerStats stats;
+        private final long start;
+
+        private Sample(TimerStats stats) {
+            this.stats = stats;
+            this.start = System.nanoTime();
+        }
+
+        @Override
+        public void close() {
+            stats.record(System.nanoTime() - start);
+        }
+    }
+
+    public static DatacatMetrics getInstance() {
+        return instance;
+    }
+
+    /**
+     * Start timing a stage.
+     */
+    public static Sample time(String stage, String model) {
+        return new Sample(instance.timer(stage, model));
+    }
+
+    public static Sample time(String stage) {
+        return time(stage, NO_MODEL);
+    }
+
+    public static void count(String counter, String model, long value) {
+        instance.counters.computeIfAbsent(key(counter, model), k -> new LongAdder()).add(value);
+    }
+
+    public static void count(String counter, String model) {
+        count(counter, model, 1L);
+    }
+
+    public static void count(String counter) {
+        count(counter, NO_MODEL, 1L);
+    }
+
+    private TimerStats timer(String stage, String model) {
+        String key = key(stage, model);
+        TimerStats stats = timers.get(key);
+        if (stats == null)
+            stats = timers.computeIfAbsent(key, k -> new TimerStats(stage, model == null ? NO_MODEL : model));
+        return stats;
+    }
+
+    private static String key(String name, String model) {
+        return (model == null || model.isEmpty()) ? name : name + "|" + model;
+    }
+
+    /**
+     * Remove all the recorded values.
+     */
+    public void reset() {
+        timers.clear();
+        counters.clear();
+    }
+
+    /**
+     * @return a JSON snapshot of the timers (count, total, mean and max duration in milliseconds) and counters
+     */
+    public String toJson() {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = new JsonFactory().createGenerator(writer)) {
+            generator.writeStartObject();
+            generator.writeArrayFieldStart("timers");
+            for (TimerStats stats : new TreeMap<>(timers).values()) {
+                long count = stats.count.sum();
+                double total = stats.totalNanos.sum() / 1e6;
+                generator.writeStartObject();
+                generator.writeStringField("stage", stats.stage);
+                generator.writeStringField("model", stats.model);
+                generator.writeNumberField("count", count);
+                generator.writeNumberField("totalMs", total);
+                generator.writeNumberField("meanMs", count == 0 ? 0.0 : total / count);
+                generator.writeNumberField("maxMs", stats.maxNanos.get() / 1e6);
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeArrayFieldStart("counters");
+            for (Map.Entry<String, LongAdder> counter : new TreeMap<>(counters).entrySet()) {
+                String[] parts = counter.getKey().split("\\|", 2);
+                generator.writeStartObject();
+                generator.writeStringField("name", parts[0]);
+                generator.writeStringField("model", parts.length > 1 ? parts[1] : NO_MODEL);
+                generator.writeNumberField("value", counter.getValue().sum());
+                generator.writeEndObject();
+            }
+            generator.writeEndArray();
+            generator.writeEndObject();
+        } catch (IOException e) {
+            // not expected with a StringWriter
+            throw new IllegalStateException(e);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * @return the timers and counters in the Prometheus text exposition format
+     */
+    public String toPrometheus() {
+        StringBuilder out = new StringBuilder();
+        Map<String, TimerStats> sortedTimers = new TreeMap<>(timers);
+        out.append("# HELP datacat_stage_seconds Duration of the processing stages.\n");
+        out.append("# TYPE datacat_stage_seconds summary\n");
+        for (TimerStats stats : sortedTimers.values()) {
+            String labels = labels(stats.stage, stats.model);
+            out.append("datacat_stage_seconds_count").append(labels).append(' ').append(stats.count.sum()).append('\n');
+            out.append("datacat_stage_seconds_sum").append(labels).append(' ')
+                .append(stats.totalNanos.sum() / 1e9).append('\n');
+        }
+        out.append("# HELP datacat_stage_max_seconds Maximum duration of the processing stages.\n");
+        out.append("# TYPE datacat_stage_max_seconds gauge\n");
+        for (TimerStats stats : sortedTimers.values()) {
+            out.append("datacat_stage_max_seconds").append(labels(stats.stage, stats.model)).append(' ')
+                .append(stats.maxNanos.get() / 1e9).append('\n');
+        }
+        Map<String, LongAdder> sortedCounters = new TreeMap<>(counters);
+        String lastName = null;
+        for (Map.Entry<String, LongAdder> counter : sortedCounters.entrySet()) {
+            String[] parts = counter.getKey().split("\\|", 2);
+            String name = "datacat_" + parts[0] + "_total";
+            if (!name.equals(lastName)) {
+                out.append("# TYPE ").append(name).append(" counter\n");
+                lastName = name;
+            }
+            out.append(name);
+            if (parts.length > 1)
+                out.append("{model=\"").append(escape(parts[1])).append("\"}");
+            out.append(' ').append(counter.getValue().sum()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static String labels(String stage, String model) {
+        StringBuilder labels = new StringBuilder("{stage=\"").append(escape(stage)).append('"');
+        if (model != null && !model.isEmpty())
+            labels.append(",model=\"").append(escape(model)).append('"');
+        return labels.append('}').toString();
+    }
+
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+}
@@ -0,0 +1,260 @@
+package org.grobid.service;
+
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import org.glassfish.jersey.media.multipart.FormDataParam;
+import org.grobid.core.data.EntryItem;
+import org.grobid.core.document.DatacatJsonlWriter;
+import org.grobid.core.document.DatacatTeiWriter;
+import org.grobid.core.engines.EngineDatacat;
+import org.grobid.core.engines.config.GrobidAnalysisConfig;
+import org.grobid.core.exceptions.GrobidException;
+import org.grobid.core.factory.GrobidDatacatFactory;
+import org.grobid.core.utilities.DatacatMetrics;
+import org.grobid.core.utilities.IOUtilities;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.ws.rs.*;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import javax.xml.stream.XMLStreamException;
+import java.io.*;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Semaphore;
+
+/**
+ * REST entry points of grobid-datacat.
+ *
+ * The models are loaded once when the service starts and are shared by all the requests, each request
+ * borrows an engine from the engine pool of GrobidDatacatFactory. The number of
+ * catalogues processed at the same time is bounded: when all the processing slots are taken, a request is
+ * immediately rejected with a 503 status and a Retry-After header instead of being queued, so that a client
+ * can retry later or on another instance.
+ */
+@Path("/api")
+public class DatacatRestService {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatacatRestService.class);
+
+    private static final String FORMAT_JSON = "json";
+    private static final String FORMAT_TEI = "tei";
+    private static final String FORMAT_JSONL = "jsonl";
+
+    private static final String MEDIA_TYPE_JSONL = "application/x-ndjson";
+
+    // set when the models are loaded and warmed up
+    private static volatile boolean ready = false;
+
+    private final Semaphore slots;
+    private final int retryAfterSeconds;
+
+    public DatacatRestService(int maxConcurrency, int retryAfterSeconds) {
+        this.slots = new Semaphore(Math.max(1, maxConcurrency));
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+
+    @GET
+    @Path("isalive")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response isAlive() {
+        return Response.ok("true").build();
+    }
+
+    public static void setReady(boolean isReady) {
+        ready = isReady;
+    }
+
+    /**
+     * Readiness of the service: 200 once the models are loaded and warmed up, 503 before.
+     */
+    @GET
+    @Path("isready")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response isReady() {
+        if (!ready) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE).entity("false")
+                .header("Retry-After", retryAfterSeconds).build();
+        }
+        return Response.ok("true").build();
+    }
+
+    /**
+     * Snapshot of the stage timers and counters, as JSON.
+     */
+    @GET
+    @Path("metrics")
+    @Produces(MediaType.APPLICATION_JSON)
+    public Response getMetrics() {
+        return Response.ok(DatacatMetrics.getInstance().toJson()).build();
+    }
+
+    /**
+     * Stage timers and counters in the Prometheus text exposition format.
+     */
+    @GET
+    @Path("metrics/prometheus")
+    @Produces(MediaType.TEXT_PLAIN)
+    public Response getPrometheusMetrics() {
+        return Response.ok(DatacatMetrics.getInstance().toPrometheus())
+            .type("text/plain; version=0.0.4; charset=utf-8").build();
+    }
+
+    /**
+     * Extract the entries, titles and title descriptions of a sale catalogue.
+     *
+     * @param inputStream the PDF file
+     * @param format      "json" (default) for a JSON array of entries, "tei" for a TEI document, "jsonl" for
+     *                    one JSON record per line and per entry (see DatacatJsonlWriter)
+     * @param id          identifier of the catalogue in the JSON Lines records, the MD5 of the PDF by default
+     */
+    @POST
+    @Path("processCatalogue")
+    @Consumes(MediaType.MULTIPART_FORM_DATA)
+    @Produces({MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML, MEDIA_TYPE_JSONL})
+    public Response processCatalogue(@FormDataParam("input") InputStream inputStream,
+                                     @DefaultValue(FORMAT_JSON) @FormDataParam("format") String format,
+                                     @FormDataParam("id") String id) {
+        if (inputStream == null) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Missing PDF file \"input\"")
+                .type(MediaType.TEXT_PLAIN).build();
+        }
+        if (!FORMAT_JSON.equals(format) && !FORMAT_TEI.equals(format) && !FORMAT_JSONL.equals(format)) {
+            return Response.status(Response.Status.BAD_REQUEST).entity("Unknown format: " + format)
+                .type(MediaType.TEXT_PLAIN).build();
+        }
+        if (!ready || !slots.tryAcquire()) {
+            return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                .header("Retry-After", retryAfterSeconds).build();
+        }
+
+        File pdfFile = null;
+        EngineDatacat engine = null;
+        List<EntryItem> entries;
+        String catalogueId;
+        try {
+            try {
+                engine = GrobidDatacatFactory.getInstance().borrowEngine();
+            } catch (NoSuchElementException e) {
+                LOGGER.warn("No engine available before the timeout of the pool");
+                return Response.status(Response.Status.SERVICE_UNAVAILABLE)
+                    .header("Retry-After", retryAfterSeconds).build();
+            }
+            pdfFile = IOUtilities.writeInputFile(inputStream);
+            if (pdfFile == null) {
+                return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+            }
+            long start = System.currentTimeMillis();
+            entries = engine.processCatalogue(pdfFile, GrobidAnalysisConfig.defaultInstance());
+            catalogueId = id != null ? id : DatacatJsonlWriter.defaultCatalogueId(pdfFile);
+            DatacatMetrics.count(DatacatMetrics.DOCUMENTS);
+            LOGGER.info(entries.size() + " catalogue items extracted in " + (System.currentTimeMillis() - start) + " ms");
+        } catch (GrobidException e) {
+            DatacatMetrics.count(DatacatMetrics.FAILED_DOCUMENTS);
+            LOGGER.error("Failed to process the catalogue", e);
+            // the engine may be in an unknown state, it is not given back to the pool
+            GrobidDatacatFactory.getInstance().invalidateEngine(engine);
+            engine = null;
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).entity(e.getMessage())
+                .type(MediaType.TEXT_PLAIN).build();
+        } catch (Exception e) {
+            DatacatMetrics.count(DatacatMetrics.FAILED_DOCUMENTS);
+            LOGGER.error("An unexpected exception occurs while processing the catalogue", e);
+            GrobidDatacatFactory.getInstance().invalidateEngine(engine);
+            engine = null;
+            return Response.status(Response.Status.INTERNAL_SERVER_ERROR).build();
+        } finally {
+            GrobidDatacatFactory.getInstance().returnEngine(engine);
+            IOUtilities.removeTempFile(pdfFile);
+            slots.release();
+        }
+
+        if (FORMAT_TEI.equals(format)) {
+            return Response.ok((StreamingOutput) output -> writeTei(entries, output))
+                .type(MediaType.APPLICATION_XML + "; charset=UTF-8").build();
+        }
+        if (FORMAT_JSONL.equals(format)) {
+            return Response.ok((StreamingOutput) output -> writeJsonLines(catalogueId, entries, output))
+                .type(MEDIA_TYPE_JSONL + "; charset=UTF-8").build();
+        }
+        return Response.ok((StreamingOutput) output -> writeJson(entries, output))
+            .type(MediaType.APPLICATION_JSON + "; charset=UTF-8").build();
+    }
+
+    private static void writeJson(List<EntryItem> entries, OutputStream output) throws IOException {
+        try (DatacatMetrics.Sample sample = DatacatMetrics.time(DatacatMetrics.SERIALIZATION)) {
+            writeJsonEntries(entries, output);
+        }
+    }
+
+    private static void writeJsonEntries(List<EntryItem> entries, OutputStream output) throws IOException {
+        JsonGenerator generator = new JsonFactory().createGenerator(output, JsonEncoding.UTF8);
+        generator.writeStartArray();
+        for (EntryItem entry : entries) {
+            generator.writeStartObject();
+            DatacatJsonlWriter.writeEntryFields(generator, entry);
+            generator.writeEndObject();
+        }
+        generator.writeEndArray();
+        generator.flush();
+    }
+
+    private static void writeJsonLines(String catalogueId, List<EntryItem> entries, OutputStream output)
+        throws IOException {
+        try (DatacatMetrics.Sample sample = DatacatMetrics.time(DatacatMetrics.SERIALIZATION)) {
+            // the writer is only flushed, the response stream is closed by the container
+            DatacatJsonlWriter writer = new DatacatJsonlWriter(output);
+            for (EntryItem entry : entries) {
+                writer.write(catalogueId, entry);
+            }
+            writer.flush();
+        }
+    }
+
+    private static void writeTei(List<EntryItem> entries, OutputStream output) throws IOException {
+        try (DatacatMetrics.Sample sample = DatacatMetrics.time(DatacatMetrics.SERIALIZATION)) {
+            writeTeiEntries(entries, output);
+        }
+    }
+
+    private static void writeTeiEntries(List<EntryItem> entries, OutputStream output) throws IOException {
+        // the writer is only flushed, the response stream is closed by the container
+        DatacatTeiWriter tei = new DatacatTeiWriter(output);
+        try {
+            tei.startDocument();
+            tei.startElement("TEI");
+            tei.defaultNamespace(DatacatTeiWriter.TEI_NS);
+            tei.whitespace("\n\t");
+            tei.emptyElement("teiHeader");
+            tei.whitespace("\n\t");
+            tei.startElement("text");
+            tei.whitespace("\n\t\t");
+            tei.startElement("body");
+            tei.whitespace("\n");
+            for (EntryItem entry : entries) {
+                tei.whitespace("\t\t\t");
+                tei.startElement("ab");
+                tei.attribute("type", entry.getLabelName());
+                String coords = entry.getCoordinatesString();
+                if (coords != null)
+                    tei.attribute("coords", coords);
+                tei.characters(entry.getText());
+                tei.endElement();
+                tei.whitespace("\n");
+            }
+            tei.whitespace("\t\t");
+            tei.endElement();
+            tei.whitespace("\n\t");
+            tei.endElement();
+            tei.whitespace("\n");
+            tei.endElement();
+            tei.whitespace("\n");
+            tei.endDocument();
+        } catch (XMLStreamException e) {
+            throw new IOException("Cannot write the TEI result", e);
+        }
+        tei.flush();
+    }
+}
@@ -0,0 +1,112 @@
+package org.grobid.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
+import org.glassfish.grizzly.http.server.HttpServer;
+import org.glassfish.jersey.grizzly2.httpserver.GrizzlyHttpServerFactory;
+import org.glassfish.jersey.media.multipart.MultiPartFeature;
+import org.glassfish.jersey.server.ResourceConfig;
+import org.grobid.core.document.DatacatDocumentCache;
+import org.grobid.core.engines.DatacatLabelCache;
+import org.grobid.core.engines.DatacatWarmUp;
+import org.grobid.core.engines.EngineDatacatParsers;
+import org.grobid.core.factory.GrobidDatacatFactory;
+import org.grobid.core.main.GrobidHomeFinder;
+import org.grobid.core.main.LibraryLoader;
+import org.grobid.core.utilities.DatacatConfiguration;
+import org.grobid.core.utilities.GrobidConfig.ModelParameters;
+import org.grobid.core.utilities.GrobidProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.net.URI;
+import java.util.Arrays;
+
+import static org.apache.commons.lang3.StringUtils.isNotBlank;
+
+/**
+ * Long-running HTTP service for grobid-datacat, the models are loaded once at startup and kept in memory
+ * between requests.
+ *
+ * Usage: java org.grobid.service.GrobidDatacatServer [path/to/grobid-datacat.yaml]
+ */
+public class GrobidDatacatServer {
+    private static final Logger LOGGER = LoggerFactory.getLogger(GrobidDatacatServer.class);
+
+    private static final String DEFAULT_CONFIG_PATH = "resources/config/grobid-datacat.yaml";
+
+    public static void main(String[] args) throws Exception {
+        String configPath = (args.length > 0) ? args[0] : DEFAULT_CONFIG_PATH;
+        DatacatConfiguration datacatConfiguration = null;
+        try {
+            ObjectMapper mapper = new ObjectMapper(new YAMLFactory());
+            datacatConfiguration = mapper.readValue(new File(configPath), DatacatConfiguration.class);
+        } catch (Exception e) {
+            LOGGER.error("The config file does not appear valid, see " + configPath, e);
+            System.exit(1);
+        }
+        DatacatConfiguration.ServiceParameters serviceParameters = datacatConfiguration.getService();
+        if (serviceParameters == null)
+            serviceParameters = new DatacatConfiguration.ServiceParameters();
+
+        initGrobid(datacatConfiguration);
+
+        ResourceConfig resourceConfig = new ResourceConfig()
+            .register(MultiPartFeature.class)
+            .register(new DatacatRestService(serviceParameters.maxConcurrency, serviceParameters.retryAfterSeconds));
+        URI uri = URI.create("http://0.0.0.0:" + serviceParameters.port + "/");
+        final HttpServer server = GrizzlyHttpServerFactory.createHttpServer(uri, resourceConfig);
+        Runtime.getRuntime().addShutdownHook(new Thread(server::shutdownNow, "datacat-server-shutdown"));
+        LOGGER.info("grobid-datacat service listening on port " + serviceParameters.port + ", not ready yet");
+
+        // load and warm up the models, the caches are enabled afterwards so that the warm-up really runs the taggers
+        DatacatConfiguration.WarmUpParameters warmUpParameters = datacatConfiguration.getWarmUp();
+        if (warmUpParameters == null)
+            warmUpParameters = new DatacatConfiguration.WarmUpParameters();
+        EngineDatacatParsers parsers = GrobidDatacatFactory.getInstance().getEngine().getParsers();
+        if (warmUpParameters.enabled) {
+            File warmUpPdf = isNotBlank(warmUpParameters.pdf) ? new File(warmUpParameters.pdf) : null;
+            new DatacatWarmUp(warmUpParameters.maxIterations, warmUpPdf).run(parsers);
+        } else {
+            parsers.initAll();
+        }
+        initCaches(datacatConfiguration);
+
+        // the engines of the pool, and the models, are loaded before accepting requests
+        DatacatConfiguration.PoolParameters poolParameters = datacatConfiguration.getPool();
+        if (poolParameters == null) {
+            poolParameters = new DatacatConfiguration.PoolParameters();
+            poolParameters.maxActive = serviceParameters.maxConcurrency;
+            poolParameters.maxIdle = serviceParameters.maxConcurrency;
+        }
+        if (poolParameters.maxActive < serviceParameters.maxConcurrency) {
+            LOGGER.warn("The engine pool is smaller than the maximum number of concurrent documents (" +
+                poolParameters.maxActive + " < " + serviceParameters.maxConcurrency + "), requests will wait for an engine");
+        }
+        GrobidDatacatFactory.getInstance().configureEnginePool(poolParameters);
+
+        DatacatRestService.setReady(true);
+        LOGGER.info("grobid-datacat service ready on port " + serviceParameters.port +
+            ", " + serviceParameters.maxConcurrency + " concurrent documents at most");
+        Thread.currentThread().join();
+    }
+
+    private static void initGrobid(DatacatConfiguration datacatConfiguration) {
+        GrobidHomeFinder grobidHomeFinder = new GrobidHomeFinder(Arrays.asList(datacatConfiguration.getGrobidHome()));
+        GrobidProperties.getInstance(grobidHomeFinder);
+        LOGGER.info("GROBID_HOME=" + GrobidProperties.getInstance().getGrobidHome());
+
+        for (ModelParameters theModel : datacatConfiguration.getModels())
+            GrobidProperties.getInstance().addModel(theModel);
+        LibraryLoader.load();
+    }
+
+    private static void initCaches(DatacatConfiguration datacatConfiguration) {
+        DatacatConfiguration.CacheParameters cache = datacatConfiguration.getCache();
+        if (cache != null && cache.isEnabled()) {
+            DatacatDocumentCache.configure(new File(cache.path, "pdfalto"), cache.maxSizeMB * 1024L * 1024L);
+            DatacatLabelCache.configure(new File(cache.path, "labels"), cache.labelsMaxSizeMB * 1024L * 1024L);
+        }
+    }
+}
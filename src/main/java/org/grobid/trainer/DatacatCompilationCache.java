@@ -0,0 +1,147 @@
+package org.grobid.trainer;
+
+import org.grobid.core.document.DatacatDocumentCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * On-disk cache of the compiled training data of each (TEI, raw) pair of a corpus, so that a training run
+ * after the correction of a few TEI files only parses and aligns again the modified pairs.
+ *
+ * An entry is keyed by the MD5 of the TEI file and the MD5 of the raw file, it holds the labeled feature lines
+ * of the pair. The pairs which are not usable (missing raw file, too many synchronization issues, read errors)
+ * are not cached, they are compiled again at each run until they are fixed. The entries are written in a
+ * temporary file and then moved, so the threads of the compilation and an interrupted run never leave a
+ * partial entry. The entries which were not used by the last complete compilation are removed.
+ *
+ * FORMAT_VERSION is part of the directory of the entries and must be incremented when the parsing or the
+ * alignment of the training files changes, so that the entries compiled by the previous code are ignored.
+ */
+public class DatacatCompilationCache {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatacatCompilationCache.class);
+
+    public static final int FORMAT_VERSION = 1;
+
+    private static final String ENTRY_EXTENSION = ".compiled";
+    // first line of an entry, an entry without it is incomplete or of another format
+    private static final String HEADER = "datacat-compiled\n";
+
+    private final Path directory;
+
+    // entries read or written since the creation of the cache
+    private final Set<String> usedKeys = ConcurrentHashMap.newKeySet();
+
+    private int nbHits = 0;
+    private int nbMisses = 0;
+
+    /**
+     * @param directory the root directory of the cache, the entries of each model being in a sub-directory
+     * @param modelName the model of the compiled training data
+     */
+    public DatacatCompilationCache(File directory, String modelName) {
+        this.directory = new File(directory, modelName + "-v" + FORMAT_VERSION).toPath();
+    }
+
+    /**
+     * @return the MD5 of both files, the key of their entry
+     */
+    public String getKey(File teiFile, File rawFile) {
+        return DatacatDocumentCache.md5(teiFile) + "-" + DatacatDocumentCache.md5(rawFile);
+    }
+
+    /**
+     * Compile a pair with the given compiler, unless an entry exists for the key of the pair.
+     *
+     * @return the labeled feature lines of the pair, null if the pair is not usable
+     */
+    public String compile(File teiFile, File rawFile, DatacatCorpusCompiler.FileCompiler fileCompiler)
+        throws Exception {
+        String key = getKey(teiFile, rawFile);
+        usedKeys.add(key);
+        Path entry = directory.resolve(key + ENTRY_EXTENSION);
+        if (Files.isRegularFile(entry)) {
+            try {
+                String content = new String(Files.readAllBytes(entry), StandardCharsets.UTF_8);
+                if (content.startsWith(HEADER)) {
+                    hit();
+                    return content.substring(HEADER.length());
+                }
+            } catch (IOException e) {
+                LOGGER.warn("Cannot read the compilation cache entry " + entry + ", it is ignored", e);
+            }
+        }
+        miss();
+        String segmentation = fileCompiler.compile(teiFile, rawFile);
+        if (segmentation != null)
+            write(entry, HEADER + segmentation);
+        return segmentation;
+    }
+
+    private void write(Path entry, String content) {
+        Path temp = null;
+        try {
+            Files.createDirectories(directory);
+            temp = Files.createTempFile(directory, "entry", ".tmp");
+            Files.write(temp, content.getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            // the cache only saves time, the compilation goes on without it
+            LOGGER.warn("Cannot write the compilation cache entry " + entry, e);
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e2) {
+                    LOGGER.debug("Cannot delete " + temp, e2);
+                }
+            }
+        }
+    }
+
+    /**
+     * Remove the entries and the temporary files which were not used since the creation of the cache, to be
+     * called after a complete compilation of the corpus.
+     */
+    public void removeUnusedEntries() {
+        if (!Files.isDirectory(directory))
+            return;
+        int nbRemoved = 0;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory)) {
+            for (Path entry : entries) {
+                String name = entry.getFileName().toString();
+                String key = name.endsWith(ENTRY_EXTENSION) ?
+                    name.substring(0, name.length() - ENTRY_EXTENSION.length()) : null;
+                if (key == null || !usedKeys.contains(key)) {
+                    Files.deleteIfExists(entry);
+                    nbRemoved++;
+                }
+            }
+        } catch (IOException e) {
+            LOGGER.warn("Cannot clean the compilation cache " + directory, e);
+        }
+        if (nbRemoved > 0)
+            LOGGER.info(nbRemoved + " unused entries removed from the compilation cache " + directory);
+    }
+
+    private synchronized void hit() {
+        nbHits++;
+    }
+
+    private synchronized void miss() {
+        nbMisses++;
+    }
+
+    public synchronized String getSummary() {
+        return nbHits + " pairs reused, " + nbMisses + " pairs compiled";
+    }
+}
@@ -0,0 +1,154 @@
+package org.grobid.trainer;
+
+import org.grobid.core.exceptions.GrobidException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Compilation of a training corpus for the datacat trainers: each TEI file is parsed and aligned with its raw
+ * file by a fork/join pool, and the results are merged into the training and evaluation files in the order of
+ * the TEI file names, whatever the order in which the files are completed, so that the training data does
+ * not depend on the number of threads.
+ *
+ * At most IN_FLIGHT_PER_THREAD files per thread are processed ahead of the file being written, the memory
+ * then depends on the number of threads and not on the size of the corpus. With a DatacatCompilationCache,
+ * only the pairs of files modified since the previous compilation are parsed and aligned again.
+ */
+public class DatacatCorpusCompiler {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DatacatCorpusCompiler.class);
+
+    private static final int IN_FLIGHT_PER_THREAD = 4;
+
+    /**
+     * Parse and align a TEI file of the corpus with its raw file.
+     */
+    public interface FileCompiler {
+        /**
+         * @return the labeled feature lines of the file, null if the file is not to be used
+         */
+        String compile(File teiFile, File rawFile) throws Exception;
+    }
+
+    /**
+     * Find the raw file of a TEI file of the corpus.
+     */
+    public interface RawFileResolver {
+        /**
+         * @return the raw file, null if it does not exist
+         */
+        File getRawFile(File teiFile);
+    }
+
+    private final int nbThreads;
+    private final DatacatCompilationCache cache;
+
+    /**
+     * @param nbThreads number of files compiled in parallel, the number of processors if not positive
+     * @param cache     cache of the compiled pairs, can be null
+     */
+    public DatacatCorpusCompiler(int nbThreads, DatacatCompilationCache cache) {
+        this.nbThreads = nbThreads > 0 ? nbThreads : Runtime.getRuntime().availableProcessors();
+        this.cache = cache;
+    }
+
+    public DatacatCorpusCompiler(DatacatCompilationCache cache) {
+        this(0, cache);
+    }
+
+    public DatacatCorpusCompiler() {
+        this(0, null);
+    }
+
+    /**
+     * Compile the TEI files and write their labeled feature lines, each file being followed by an empty line.
+     * When both writers are given, a file goes to the training data with the probability splitRatio, otherwise
+     * all the files go to the given writer.
+     *
+     * @param teiFiles       the TEI files of the corpus
+     * @param rawFiles       the raw file of each TEI file, the TEI files without raw file are ignored
+     * @param fileCompiler   the parsing and the alignment of one file, called by the threads of the pool when
+     *                       the pair is not in the cache
+     * @param trainingWriter writer of the training data, can be null
+     * @param evalWriter     writer of the evaluation data, can be null
+     * @param splitRatio     ratio of the files used for training when both writers are given
+     * @return the number of files written
+     */
+    public int compile(File[] teiFiles,
+                       final RawFileResolver rawFiles,
+                       final FileCompiler fileCompiler,
+                       Writer trainingWriter,
+                       Writer evalWriter,
+                       double splitRatio) throws IOException {
+        File[] files = teiFiles.clone();
+        Arrays.sort(files);
+
+        ForkJoinPool pool = new ForkJoinPool(nbThreads);
+        Deque<ForkJoinTask<String>> tasks = new ArrayDeque<>();
+        int nbWritten = 0;
+        try {
+            int next = 0;
+            int maxInFlight = nbThreads * IN_FLIGHT_PER_THREAD;
+            while (next < files.length || !tasks.isEmpty()) {
+                while (next < files.length && tasks.size() < maxInFlight) {
+                    final File teiFile = files[next++];
+                    tasks.addLast(pool.submit(() -> compileFile(teiFile, rawFiles, fileCompiler)));
+                }
+                String segmentation = join(tasks.removeFirst());
+                if (segmentation == null)
+                    continue;
+                Writer writer;
+                if (trainingWriter == null)
+                    writer = evalWriter;
+                else if (evalWriter == null)
+                    writer = trainingWriter;
+                else
+                    writer = Math.random() <= splitRatio ? trainingWriter : evalWriter;
+                if (writer != null) {
+                    writer.append(segmentation).append('\n');
+                    nbWritten++;
+                }
+            }
+        } finally {
+            for (ForkJoinTask<String> task : tasks) {
+                task.cancel(true);
+            }
+            pool.shutdownNow();
+        }
+        LOGGER.info(nbWritten + " of " + files.length + " files written with " + nbThreads + " threads");
+        if (cache != null) {
+            LOGGER.info("compilation cache: " + cache.getSummary());
+            cache.removeUnusedEntries();
+        }
+        return nbWritten;
+    }
+
+    private String compileFile(File teiFile, RawFileResolver rawFiles, FileCompiler fileCompiler) throws Exception {
+        File rawFile = rawFiles.getRawFile(teiFile);
+        if (rawFile == null)
+            return null;
+        if (cache == null)
+            return fileCompiler.compile(teiFile, rawFile);
+        return cache.compile(teiFile, rawFile, fileCompiler);
+    }
+
+    private static String join(ForkJoinTask<String> task) {
+        try {
+            return task.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new GrobidException("Interrupted while compiling the training data", e);
+        } catch (ExecutionException e) {
+            throw new GrobidException("An exception occured while compiling the training data", e.getCause());
+        }
+    }
+}
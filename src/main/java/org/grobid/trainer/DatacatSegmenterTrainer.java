@@ -5,9 +5,9 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.dataformat.yaml.YAMLFactory;
 import org.grobid.core.main.GrobidHomeFinder;
 import org.grobid.core.exceptions.GrobidException;
+import org.grobid.core.utilities.DatacatArtifacts;
 import org.grobid.core.utilities.DatacatConfiguration;
 import org.grobid.core.utilities.GrobidProperties;
-import org.grobid.core.utilities.UnicodeUtil;
 import org.grobid.trainer.sax.TEIDatacatSegmenterSaxParser;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,12 +18,14 @@ import java.io.*;
 import java.util.List;
 import java.util.Arrays;
 import java.util.ArrayList;
-import java.util.StringTokenizer;
 
 import org.apache.commons.io.FileUtils;
 
 public class DatacatSegmenterTrainer extends AbstractTrainer {
 
+    // directory of the compilation cache, in the directory of the corpus
+    private static final String COMPILATION_CACHE_DIRECTORY = ".compiled";
+
     public DatacatSegmenterTrainer() {
         super(GrobidModels.DATACAT_SEGMENTER);
     }
@@ -109,37 +111,68 @@ public class DatacatSegmenterTrainer extends AbstractTrainer {
                 writer3 = new OutputStreamWriter(os3, "UTF8");
             }
 
-            // get a factory for SAX parser
-            SAXParserFactory spf = SAXParserFactory.newInstance();
+            // the files are parsed and aligned in parallel, and written in the order of their names, the pairs
+            // of files not modified since the previous compilation are taken from the cache
+            DatacatCompilationCache cache = new DatacatCompilationCache(
+                new File(input.getAbsoluteFile().getParentFile(), COMPILATION_CACHE_DIRECTORY),
+                GrobidModels.DATACAT_SEGMENTER.getModelName());
+            DatacatCorpusCompiler compiler = new DatacatCorpusCompiler(cache);
+            compiler.compile(refFiles, tf -> getRawFile(tf, sourceRawPathLabel), this::compileFile,
+                writer2, writer3, splitRatio);
 
-            for (File tf : refFiles) {
-                String name = tf.getName();
-                LOGGER.info("Processing: " + name);
+            if (writer2 != null) {
+                writer2.close();
+                os2.close();
+            }
 
-                TEIDatacatSegmenterSaxParser parser2 = new TEIDatacatSegmenterSaxParser();
+            if (writer3 != null) {
+                writer3.close();
+                os3.close();
+            }
+        } catch (Exception e) {
+            throw new GrobidException("An exception occured while running Grobid.", e);
+        }
+        return totalExamples;
+    }
 
-                //get a new instance of parser
-                SAXParser p = spf.newSAXParser();
-                p.parse(tf, parser2);
+    /**
+     * @return the raw file of a TEI file of the corpus, which can be compressed, null if it does not exist
+     */
+    private File getRawFile(File tf, String sourceRawPathLabel) {
+        String rawPath = sourceRawPathLabel + File.separator + tf.getName().replace(".tei.xml", "");
+        File theRawFile = DatacatArtifacts.findArtifact(new File(rawPath));
+        if (theRawFile == null)
+            LOGGER.error("The raw file does not exist: " + rawPath + "[.gz]");
+        return theRawFile;
+    }
 
-                List<String> labeled = parser2.getLabeledResult();
+    /**
+     * Parse a TEI file of the corpus and add its labels to the lines of the corresponding raw file.
+     *
+     * @return the labeled feature lines, null if the raw file cannot be aligned
+     */
+    private String compileFile(File tf, File theRawFile) throws Exception {
+        String name = tf.getName();
+        LOGGER.info("Processing: " + name);
+
+        TEIDatacatSegmenterSaxParser parser2 = new TEIDatacatSegmenterSaxParser();
 
-                // we can now add the features
-                // we open the featured file
-                try {
-                    File theRawFile = new File(sourceRawPathLabel + File.separator + name.replace(".tei.xml", ""));
-                    if (!theRawFile.exists()) {
-                        LOGGER.error("The raw file does not exist: " + theRawFile.getPath());
-                        continue;
-                    }
+        //get a new instance of parser, the factory is not thread-safe
+        SAXParser p = SAXParserFactory.newInstance().newSAXParser();
+        p.parse(tf, parser2);
 
-                    // removing the @newline
-                    /*List<String> newLabeled = new ArrayList<String>();
-                    for(String label : labeled) {
-                        if (!label.startsWith("@newline"))
-                            newLabeled.add(label);
-                    }
-                    labeled = newLabeled;*/
+        List<String> labeled = parser2.getLabeledResult();
+
+        // we can now add the features
+        // we open the featured file
+        try {
+            // removing the @newline
+            /*List<String> newLabeled = new ArrayList<String>();
+            for(String label : labeled) {
+                if (!label.startsWith("@newline"))
+                    newLabeled.add(label);
+            }
+            labeled = newLabeled;*/
 
 /*StringBuilder temp = new StringBuilder();
 for(String label : labeled) {
@@ -147,90 +180,30 @@ for(String label : labeled) {
 }
 FileUtils.writeStringToFile(new File("/tmp/expected-"+name+".txt"), temp.toString());*/
 
-                    int q = 0;
-                    BufferedReader bis = new BufferedReader(
-                        new InputStreamReader(new FileInputStream(theRawFile), "UTF8"));
-                    StringBuilder segmentation = new StringBuilder();
-                    String line = null;
-                    int l = 0;
-                    String previousTag = null;
-                    int nbInvalid = 0;
-                    while ((line = bis.readLine()) != null) {
-                        l++;
-                        int ii = line.indexOf(' ');
-                        String token = null;
-                        if (ii != -1) {
-                            token = line.substring(0, ii);
-                            // unicode normalisation of the token - it should not be necessary if the training data
-                            // has been gnerated by a recent version of grobid
-                            token = UnicodeUtil.normaliseTextAndRemoveSpaces(token);
-                        }
-                        // we get the label in the labelled data file for the same token
-                        for (int pp = q; pp < labeled.size(); pp++) {
-                            String localLine = labeled.get(pp);
-                            StringTokenizer st = new StringTokenizer(localLine, " \t");
-                            if (st.hasMoreTokens()) {
-                                String localToken = st.nextToken();
-                                // unicode normalisation of the token - it should not be necessary if the training data
-                                // has been gnerated by a recent version of grobid
-                                localToken = UnicodeUtil.normaliseTextAndRemoveSpaces(localToken);
-                                if (localToken.equals(token)) {
-                                    String tag = st.nextToken();
-                                    segmentation.append(line).append(" ").append(tag);
-                                    previousTag = tag;
-                                    q = pp + 1;
-                                    nbInvalid = 0;
-                                    //pp = q + 10;
-                                    break;
-                                }
-                            }
-                            if (pp - q > 5) {
-                                //LOGGER.warn(name + " / Segmentation trainer: TEI and raw file unsynchronized at raw line " + l + " : " + localLine);
-                                nbInvalid++;
-                                // let's reuse the latest tag
-                                if (previousTag != null)
-                                    segmentation.append(line).append(" ").append(previousTag);
-                                break;
-                            }
-                        }
-                        if (nbInvalid > 20) {
-                            // too many consecutive synchronization issues
-                            break;
-                        }
-                    }
-                    bis.close();
-                    if (nbInvalid < 10) {
-                        if ((writer2 == null) && (writer3 != null))
-                            writer3.write(segmentation.toString() + "\n");
-                        if ((writer2 != null) && (writer3 == null))
-                            writer2.write(segmentation.toString() + "\n");
-                        else {
-                            if (Math.random() <= splitRatio)
-                                writer2.write(segmentation.toString() + "\n");
-                            else
-                                writer3.write(segmentation.toString() + "\n");
-                        }
-                    } else {
-                        LOGGER.warn(name + " / too many synchronization issues, file not used in training data and to be fixed!");
-                    }
-                } catch (Exception e) {
-                    LOGGER.error("Fail to open or process raw file", e);
+            DatacatTrainingAligner aligner = new DatacatTrainingAligner(labeled);
+            BufferedReader bis = DatacatArtifacts.openReader(theRawFile);
+            StringBuilder segmentation = new StringBuilder();
+            String line = null;
+            int nbInvalid = 0;
+            while ((line = bis.readLine()) != null) {
+                // we get the label in the labelled data file for the same token
+                aligner.align(line, segmentation);
+                nbInvalid = aligner.getNbInvalid();
+                if (nbInvalid > 20) {
+                    // too many consecutive synchronization issues
+                    break;
                 }
             }
-
-            if (writer2 != null) {
-                writer2.close();
-                os2.close();
-            }
-
-            if (writer3 != null) {
-                writer3.close();
-                os3.close();
+            bis.close();
+            if (nbInvalid < 10) {
+                return segmentation.toString();
+            } else {
+                LOGGER.warn(name + " / too many synchronization issues, file not used in training data and to be fixed!");
             }
         } catch (Exception e) {
-            throw new GrobidException("An exception occured while running Grobid.", e);
+            LOGGER.error("Fail to open or process raw file", e);
         }
-        return totalExamples;
+        return null;
     }
 
     /**
@@ -0,0 +1,138 @@
+package org.grobid.trainer;
+
+import org.grobid.core.utilities.UnicodeUtil;
+
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Alignment of the lines of a raw (featured) training file with the labeled tokens produced by the SAX parser
+ * of the corresponding TEI file, used by the datacat trainers to add the labels to the feature lines.
+ *
+ * The labeled tokens are split and normalised once, in arrays, when the aligner is created. The raw lines are
+ * then aligned in a single forward pass: a raw line gets the label of the first labeled token equal to its
+ * first token in a band of BAND_WIDTH tokens starting after the last aligned token. When no token of the band
+ * matches, the line is unsynchronized and gets the previous label. The alignment is thus linear in the size of
+ * the two files, each raw line being compared to at most BAND_WIDTH labeled tokens, and each labeled token
+ * normalised once.
+ */
+public class DatacatTrainingAligner {
+
+    // number of labeled tokens compared with a raw line
+    public static final int BAND_WIDTH = 7;
+
+    // normalised first token of each labeled line, null if the line is blank
+    private final String[] tokens;
+
+    // label of each labeled line (the second field, with the line break of the labeled line), null if missing
+    private final String[] tags;
+
+    private final List<String> labeled;
+
+    // index of the first labeled token of the band
+    private int position = 0;
+
+    private String previousTag = null;
+
+    // number of consecutive unsynchronized raw lines
+    private int nbInvalid = 0;
+
+    private String lastUnsynchronizedLine = null;
+
+    /**
+     * @param labeled the labeled result of the SAX parser, one "token label\n" line per token
+     */
+    public DatacatTrainingAligner(List<String> labeled) {
+        this.labeled = labeled;
+        int size = labeled.size();
+        this.tokens = new String[size];
+        this.tags = new String[size];
+        for (int i = 0; i < size; i++) {
+            String localLine = labeled.get(i);
+            int start = skipDelimiters(localLine, 0);
+            if (start == localLine.length())
+                continue;
+            int end = nextDelimiter(localLine, start);
+            // unicode normalisation of the token - it should not be necessary if the training data
+            // has been gnerated by a recent version of grobid
+            tokens[i] = UnicodeUtil.normaliseTextAndRemoveSpaces(localLine.substring(start, end));
+            int tagStart = skipDelimiters(localLine, end);
+            if (tagStart < localLine.length())
+                tags[i] = localLine.substring(tagStart, nextDelimiter(localLine, tagStart));
+        }
+    }
+
+    /**
+     * Add a raw line with its label to the output, or with the previous label if the line cannot be aligned.
+     * A line is not written when it is unsynchronized before any label, or when the labeled tokens are
+     * exhausted.
+     *
+     * @return false if the line is unsynchronized
+     */
+    public boolean align(String line, StringBuilder output) {
+        String token = null;
+        int ii = line.indexOf(' ');
+        if (ii != -1) {
+            // unicode normalisation of the token - it should not be necessary if the training data
+            // has been gnerated by a recent version of grobid
+            token = UnicodeUtil.normaliseTextAndRemoveSpaces(line.substring(0, ii));
+        }
+
+        int end = Math.min(tokens.length, position + BAND_WIDTH);
+        if (token != null) {
+            for (int pp = position; pp < end; pp++) {
+                if (token.equals(tokens[pp])) {
+                    String tag = tags[pp];
+                    if (tag == null)
+                        throw new NoSuchElementException("No label for the token of the labeled line " + pp);
+                    output.append(line).append(" ").append(tag);
+                    previousTag = tag;
+                    position = pp + 1;
+                    nbInvalid = 0;
+                    return true;
+                }
+            }
+        }
+        if (end - position < BAND_WIDTH) {
+            // end of the labeled tokens, the line is ignored
+            return true;
+        }
+
+        nbInvalid++;
+        lastUnsynchronizedLine = labeled.get(end - 1);
+        // let's reuse the latest tag
+        if (previousTag != null)
+            output.append(line).append(" ").append(previousTag);
+        return false;
+    }
+
+    /**
+     * @return the number of consecutive raw lines which could not be aligned
+     */
+    public int getNbInvalid() {
+        return nbInvalid;
+    }
+
+    /**
+     * @return the last labeled line compared with the last unsynchronized raw line, for the diagnostics
+     */
+    public String getLastUnsynchronizedLine() {
+        return lastUnsynchronizedLine;
+    }
+
+    private static boolean isDelimiter(char c) {
+        return c == ' ' || c == '\t';
+    }
+
+    private static int skipDelimiters(String s, int from) {
+        while (from < s.length() && isDelimiter(s.charAt(from)))
+            from++;
+        return from;
+    }
+
+    private static int nextDelimiter(String s, int from) {
+        while (from < s.length() && !isDelimiter(s.charAt(from)))
+            from++;
+        return from;
+    }
+}
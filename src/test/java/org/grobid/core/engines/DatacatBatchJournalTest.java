@@ -0,0 +1,225 @@
+package org.grobid.core.engines;
+
+import org.apache.commons.io.FileUtils;
+import org.grobid.core.document.DatacatDocumentCache;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class DatacatBatchJournalTest {
+
+    private static final String BATCH = "test";
+    private static final String VERSION = "v1";
+
+    private static final long MTIME = 1500000000000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File outputDirectory;
+    private File inputFile;
+
+    @Before
+    public void setUp() throws Exception {
+        outputDirectory = folder.newFolder("output");
+        inputFile = folder.newFile("catalogue.pdf");
+        write(inputFile, "%PDF-1.4 catalogue", MTIME);
+    }
+
+    @Test
+    public void testIsDone_done_shouldBeSkipped() throws Exception {
+        record(VERSION, journal -> journal.done("a/catalogue.pdf", inputFile, md5(inputFile)));
+
+        try (DatacatBatchJournal journal = open(VERSION)) {
+            assertThat(journal.isDone("a/catalogue.pdf", inputFile), is(true));
+            assertThat(journal.isDone("b/catalogue.pdf", inputFile), is(false));
+        }
+    }
+
+    @Test
+    public void testIsDone_startedOrFailed_shouldBeProcessedAgain() throws Exception {
+        record(VERSION, journal -> {
+            journal.started("started.pdf", inputFile, md5(inputFile));
+            journal.started("failed.pdf", inputFile, md5(inputFile));
+            journal.failed("failed.pdf", inputFile, md5(inputFile), new IllegalStateException("broken"));
+        });
+
+        try (DatacatBatchJournal journal = open(VERSION)) {
+            assertThat(journal.isDone("started.pdf", inputFile), is(false));
+            assertThat(journal.isDone("failed.pdf", inputFile), is(false));
+        }
+    }
+
+    @Test
+    public void testIsDone_lastRecord_shouldWin() throws Exception {
+        record(VERSION, journal -> {
+            journal.done("redone.pdf", inputFile, md5(inputFile));
+            journal.failed("redone.pdf", inputFile, md5(inputFile), new IllegalStateException("broken"));
+            journal.failed("retried.pdf", inputFile, md5(inputFile), new IllegalStateException("broken"));
+            journal.done("retried.pdf", inputFile, md5(inputFile));
+        });
+
+        try (DatacatBatchJournal journal = open(VERSION)) {
+            assertThat(journal.isDone("redone.pdf", inputFile), is(false));
+            assertThat(journal.isDone("retried.pdf", inputFile), is(true));
+        }
+    }
+
+    @Test
+    public void testIsDone_otherModelVersion_shouldBeProcessedAgain() throws Exception {
+        record(VERSION, journal -> journal.done("catalogue.pdf", inputFile, md5(inputFile)));
+
+        try (DatacatBatchJournal journal = open("v2")) {
+            assertThat(journal.isDone("catalogue.pdf", inputFile), is(false));
+        }
+    }
+
+    @Test
+    public void testIsDone_otherSize_shouldBeProcessedAgain() throws Exception {
+        record(VERSION, journal -> journal.done("catalogue.pdf", inputFile, md5(inputFile)));
+        write(inputFile, "%PDF-1.4 catalogue, second edition", MTIME);
+
+        try (DatacatBatchJournal journal = open(VERSION)) {
+            assertThat(journal.isDone("catalogue.pdf", inputFile), is(false));
+        }
+    }
+
+    @Test
+    public void testIsDone_touchedSameContent_shouldBeSkippedAndRecordedAgain() throws Exception {
+        record(VERSION, journal -> journal.done("catalogue.pdf", inputFile, md5(inputFile)));
+        assertThat(inputFile.setLastModified(MTIME + 60000L), is(true));
+        long touched = inputFile.lastModified();
+
+        try (DatacatBatchJournal journal = open(VERSION)) {
+            assertThat(journal.isDone("catalogue.pdf", inputFile), is(true));
+        }
+
+        // the new modification time is recorded, the next runs do not need the MD5
+        String[] last = fields(lastLine(journalFile()));
+        assertThat(last[0], is(DatacatBatchJournal.DONE));
+        assertThat(last[2], is(String.valueOf(touched)));
+        assertThat(last[3], is(md5(inputFile)));
+        assertThat(last[7], is("catalogue.pdf"));
+    }
+
+    @Test
+    public void testIsDone_touchedOtherContent_shouldBeProcessedAgain() throws Exception {
+        record(VERSION, journal -> journal.done("catalogue.pdf", inputFile, md5(inputFile)));
+        // same size, other content
+        write(inputFile, "%PDF-1.4 catalogux", MTIME + 60000L);
+        int nbLines = lines(journalFile()).size();
+
+        try (DatacatBatchJournal journal = open(VERSION)) {
+            assertThat(journal.isDone("catalogue.pdf", inputFile), is(false));
+        }
+        assertThat(lines(journalFile()).size(), is(nbLines));
+    }
+
+    @Test
+    public void testIsDone_touchedWithoutMd5_shouldBeProcessedAgain() throws Exception {
+        record(VERSION, journal -> journal.done("catalogue.pdf", inputFile, null));
+
+        try (DatacatBatchJournal journal = open(VERSION)) {
+            assertThat(journal.isDone("catalogue.pdf", inputFile), is(true));
+        }
+
+        assertThat(inputFile.setLastModified(MTIME + 60000L), is(true));
+        try (DatacatBatchJournal journal = open(VERSION)) {
+            assertThat(journal.isDone("catalogue.pdf", inputFile), is(false));
+        }
+    }
+
+    @Test
+    public void testOpen_truncatedLastLine_shouldBeIgnoredAndTerminated() throws Exception {
+        record(VERSION, journal -> journal.done("complete.pdf", inputFile, md5(inputFile)));
+        // a crash in the middle of a record
+        FileUtils.writeStringToFile(journalFile(), "DONE\t18\t15000", StandardCharsets.UTF_8, true);
+
+        File otherFile = folder.newFile("other.pdf");
+        write(otherFile, "%PDF-1.4 other", MTIME);
+        try (DatacatBatchJournal journal = open(VERSION)) {
+            assertThat(journal.isDone("complete.pdf", inputFile), is(true));
+            journal.done("other.pdf", otherFile, md5(otherFile));
+        }
+
+        List<String> lines = lines(journalFile());
+        assertThat(lines.size(), is(3));
+        assertThat(lines.get(1), is("DONE\t18\t15000"));
+        assertThat(fields(lines.get(2))[7], is("other.pdf"));
+        try (DatacatBatchJournal journal = open(VERSION)) {
+            assertThat(journal.isDone("complete.pdf", inputFile), is(true));
+            assertThat(journal.isDone("other.pdf", otherFile), is(true));
+        }
+    }
+
+    @Test
+    public void testRecord_separatorsInValues_shouldKeepTheFields() throws Exception {
+        record(VERSION, journal -> {
+            journal.failed("with space/catalogue.pdf", inputFile, null,
+                new IllegalStateException("line\tone\nline two"));
+            journal.done("with space/catalogue.pdf", inputFile, md5(inputFile));
+            journal.done("with\ttab.pdf", inputFile, md5(inputFile));
+        });
+
+        List<String> lines = lines(journalFile());
+        assertThat(lines.size(), is(3));
+        for (String line : lines) {
+            assertThat(fields(line).length, is(8));
+        }
+        assertThat(fields(lines.get(0))[6], is("java.lang.IllegalStateException: line one line two"));
+        assertThat(fields(lines.get(2))[7], is("with tab.pdf"));
+        try (DatacatBatchJournal journal = open(VERSION)) {
+            assertThat(journal.isDone("with space/catalogue.pdf", inputFile), is(true));
+            assertThat(journal.isDone("with tab.pdf", inputFile), is(true));
+        }
+    }
+
+    private interface Recorder {
+        void record(DatacatBatchJournal journal) throws Exception;
+    }
+
+    private void record(String modelVersion, Recorder recorder) throws Exception {
+        try (DatacatBatchJournal journal = open(modelVersion)) {
+            recorder.record(journal);
+        }
+    }
+
+    private DatacatBatchJournal open(String modelVersion) {
+        return new DatacatBatchJournal(outputDirectory, BATCH, modelVersion);
+    }
+
+    private File journalFile() {
+        return new File(outputDirectory, ".datacat-" + BATCH + ".journal");
+    }
+
+    private static void write(File file, String content, long lastModified) throws IOException {
+        FileUtils.writeStringToFile(file, content, StandardCharsets.UTF_8);
+        assertThat(file.setLastModified(lastModified), is(true));
+    }
+
+    private static String md5(File file) {
+        return DatacatDocumentCache.md5(file);
+    }
+
+    private static List<String> lines(File file) throws IOException {
+        return FileUtils.readLines(file, StandardCharsets.UTF_8);
+    }
+
+    private static String lastLine(File file) throws IOException {
+        List<String> lines = lines(file);
+        return lines.get(lines.size() - 1);
+    }
+
+    private static String[] fields(String line) {
+        return line.split("\t", -1);
+    }
+}
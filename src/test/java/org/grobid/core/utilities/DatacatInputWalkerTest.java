@@ -0,0 +1,123 @@
+package org.grobid.core.utilities;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.TreeSet;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class DatacatInputWalkerTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private File inputDirectory;
+
+    /**
+     * catalogue.pdf
+     * CATALOGUE2.PDF
+     * notes.txt
+     * drouot/catalogue.pdf
+     * drouot/1897/a.pdf
+     * drouot/1897/b.pdf
+     * drouot/1897/b.txt
+     * drouot/1898/c.pdf
+     * drouot/1898/tmp/d.pdf
+     * christies/1897/e.pdf
+     */
+    @Before
+    public void setUp() throws Exception {
+        inputDirectory = folder.newFolder("input");
+        for (String path : new String[]{"catalogue.pdf", "CATALOGUE2.PDF", "notes.txt", "drouot/catalogue.pdf",
+            "drouot/1897/a.pdf", "drouot/1897/b.pdf", "drouot/1897/b.txt", "drouot/1898/c.pdf",
+            "drouot/1898/tmp/d.pdf", "christies/1897/e.pdf"}) {
+            File file = new File(inputDirectory, path);
+            assertThat(file.getParentFile().isDirectory() || file.getParentFile().mkdirs(), is(true));
+            assertThat(file.createNewFile(), is(true));
+        }
+    }
+
+    @Test
+    public void testWalk_default_shouldVisitTopLevelPdfOnly() throws Exception {
+        assertThat(walk(new DatacatInputWalker()), is(paths("catalogue.pdf", "CATALOGUE2.PDF")));
+    }
+
+    @Test
+    public void testWalk_nonRecursiveWithPattern_shouldStopAtFirstLevel() throws Exception {
+        DatacatInputWalker walker = new DatacatInputWalker(false, Collections.singletonList("**.pdf"), null);
+
+        assertThat(walk(walker), is(paths("catalogue.pdf")));
+    }
+
+    @Test
+    public void testWalk_recursiveDefault_shouldVisitPdfAtAnyDepth() throws Exception {
+        DatacatInputWalker walker = new DatacatInputWalker(true, null, null);
+
+        assertThat(walk(walker), is(paths("catalogue.pdf", "CATALOGUE2.PDF", "drouot/catalogue.pdf",
+            "drouot/1897/a.pdf", "drouot/1897/b.pdf", "drouot/1898/c.pdf", "drouot/1898/tmp/d.pdf",
+            "christies/1897/e.pdf")));
+    }
+
+    @Test
+    public void testWalk_houseYearLayout_shouldVisitTheYearDirectories() throws Exception {
+        DatacatInputWalker walker = new DatacatInputWalker(true, Collections.singletonList("*/*/*.pdf"), null);
+
+        assertThat(walk(walker), is(paths("drouot/1897/a.pdf", "drouot/1897/b.pdf", "drouot/1898/c.pdf",
+            "christies/1897/e.pdf")));
+
+        walker = new DatacatInputWalker(true, Collections.singletonList("*/1897/*.pdf"), null);
+        assertThat(walk(walker), is(paths("drouot/1897/a.pdf", "drouot/1897/b.pdf", "christies/1897/e.pdf")));
+    }
+
+    @Test
+    public void testWalk_excludedDirectory_shouldBeSkipped() throws Exception {
+        // the pattern matches the directory but none of its files, they are skipped with the directory
+        DatacatInputWalker walker = new DatacatInputWalker(true, null, Arrays.asList("drouot/1898", "**/b.pdf"));
+
+        assertThat(walk(walker), is(paths("catalogue.pdf", "CATALOGUE2.PDF", "drouot/catalogue.pdf",
+            "drouot/1897/a.pdf", "christies/1897/e.pdf")));
+    }
+
+    @Test
+    public void testWalk_relativeDirectory_shouldMirrorTheInputTree() throws Exception {
+        final TreeSet<String> outputPaths = new TreeSet<>();
+        DatacatInputWalker walker = new DatacatInputWalker(true, Collections.singletonList("*/*/*.pdf"), null);
+        int nbFiles = walker.walk(inputDirectory, (inputFile, relativeDirectory) -> {
+            assertThat(new File(inputDirectory, relativeDirectory).equals(inputFile.getParentFile()), is(true));
+            outputPaths.add(DatacatInputWalker.getOutputPath("output", relativeDirectory));
+        });
+
+        assertThat(nbFiles, is(4));
+        assertThat(outputPaths, is(new TreeSet<>(Arrays.asList(
+            "output" + File.separator + "drouot" + File.separator + "1897",
+            "output" + File.separator + "drouot" + File.separator + "1898",
+            "output" + File.separator + "christies" + File.separator + "1897"))));
+        assertThat(DatacatInputWalker.getOutputPath("output", ""), is("output"));
+    }
+
+    @Test
+    public void testGetInputPath_shouldUseSlashSeparators() throws Exception {
+        assertThat(DatacatInputWalker.getInputPath(new File("a.pdf"), ""), is("a.pdf"));
+        assertThat(DatacatInputWalker.getInputPath(new File("a.pdf"), "drouot" + File.separator + "1897"),
+            is("drouot/1897/a.pdf"));
+    }
+
+    private TreeSet<String> walk(DatacatInputWalker walker) throws IOException {
+        final TreeSet<String> visited = new TreeSet<>();
+        walker.walk(inputDirectory, (inputFile, relativeDirectory) ->
+            visited.add(DatacatInputWalker.getInputPath(inputFile, relativeDirectory)));
+        return visited;
+    }
+
+    private static TreeSet<String> paths(String... paths) {
+        return new TreeSet<>(Arrays.asList(paths));
+    }
+}
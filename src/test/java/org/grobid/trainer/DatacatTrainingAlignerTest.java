@@ -0,0 +1,181 @@
+package org.grobid.trainer;
+
+import org.grobid.core.utilities.DatacatArtifacts;
+import org.grobid.core.utilities.UnicodeUtil;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.StringTokenizer;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The alignment of DatacatTrainingAligner must produce exactly the training data of the window alignment
+ * previously used by the datacat trainers, kept here as the reference. The raw files of the corpus are aligned
+ * with labeled tokens derived from the raw files, then perturbed like TEI files out of sync with their raw
+ * files (missing, extra and modified tokens).
+ */
+public class DatacatTrainingAlignerTest {
+
+    private static final String[] RAW_DIRECTORIES = {
+        "resources/dataset/datacat-segmenter/corpus/raw",
+        "resources/dataset/datacat-body-segmentation/corpus/raw"
+    };
+
+    // raw files of each corpus used by the test
+    private static final int NB_FILES = 3;
+
+    // perturbations of the labeled tokens of each raw file
+    private static final int NB_SEEDS = 10;
+
+    private static final String[] LABELS = {"<header>", "<body>", "<page>", "<other>"};
+
+    @Test
+    public void testAlign_corpus_shouldMatchWindowAlignment() throws Exception {
+        int nbFiles = 0;
+        for (String rawDirectory : RAW_DIRECTORIES) {
+            File[] rawFiles = new File(rawDirectory).listFiles(File::isFile);
+            assertNotNull("missing corpus " + rawDirectory, rawFiles);
+            Arrays.sort(rawFiles);
+            for (int i = 0; i < Math.min(NB_FILES, rawFiles.length); i++) {
+                List<String> rawLines = readLines(rawFiles[i]);
+                List<String> labeled = label(rawLines);
+
+                assertThat(rawFiles[i].getName(), align(labeled, rawLines), is(windowAlign(labeled, rawLines)));
+                for (int seed = 0; seed < NB_SEEDS; seed++) {
+                    List<String> perturbed = perturb(labeled, new Random(seed));
+                    assertThat(rawFiles[i].getName() + " / seed " + seed,
+                        align(perturbed, rawLines), is(windowAlign(perturbed, rawLines)));
+                }
+                nbFiles++;
+            }
+        }
+        assertTrue(nbFiles > 0);
+    }
+
+    @Test
+    public void testAlign_desynchronized_shouldMatchWindowAlignment() throws Exception {
+        List<String> rawLines = Arrays.asList("a 1", "b 1", "", "c 1", "d 1", "e 1", "f 1", "g 1", "h 1", "i 1");
+        List<String> labeled = Arrays.asList("x <body>\n", "a <header>\n", "\n", "c <body>\n", "y <body>\n",
+            "y <body>\n", "y <body>\n", "y <body>\n", "y <body>\n", "y <body>\n", "y <body>\n", "i <page>\n");
+
+        assertThat(align(labeled, rawLines), is(windowAlign(labeled, rawLines)));
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testAlign_missingLabel_shouldThrowException() throws Exception {
+        align(Arrays.asList("a <body>\n", "b\n"), Arrays.asList("a 1", "b 1"));
+    }
+
+    private static List<String> readLines(File rawFile) throws IOException {
+        List<String> lines = new ArrayList<>();
+        try (BufferedReader reader = DatacatArtifacts.openReader(rawFile)) {
+            String line;
+            while ((line = reader.readLine()) != null)
+                lines.add(line);
+        }
+        return lines;
+    }
+
+    // one labeled line per token of the raw file, the label changing every few tokens
+    private static List<String> label(List<String> rawLines) {
+        List<String> labeled = new ArrayList<>();
+        for (String line : rawLines) {
+            int ii = line.indexOf(' ');
+            if (ii == -1)
+                continue;
+            String label = LABELS[(labeled.size() / 17) % LABELS.length];
+            String prefix = (labeled.size() % 17 == 0) ? "I-" : "";
+            labeled.add(line.substring(0, ii) + " " + prefix + label + "\n");
+        }
+        return labeled;
+    }
+
+    private static List<String> perturb(List<String> labeled, Random random) {
+        List<String> perturbed = new ArrayList<>();
+        for (int i = 0; i < labeled.size(); i++) {
+            String localLine = labeled.get(i);
+            int r = random.nextInt(1000);
+            if (r < 30) {
+                // token missing in the TEI file
+                continue;
+            } else if (r < 33) {
+                // block of text missing in the TEI file
+                i += 5 + random.nextInt(30);
+                continue;
+            } else if (r < 60) {
+                // token missing in the raw file
+                perturbed.add("extra" + random.nextInt(10) + " <body>\n");
+            } else if (r < 70) {
+                perturbed.add("\n");
+            } else if (r < 90) {
+                // different token
+                localLine = "x" + localLine;
+            } else if (r < 100) {
+                localLine = localLine.replace(' ', '\t');
+            }
+            perturbed.add(localLine);
+        }
+        return perturbed;
+    }
+
+    private static String align(List<String> labeled, List<String> rawLines) {
+        DatacatTrainingAligner aligner = new DatacatTrainingAligner(labeled);
+        StringBuilder segmentation = new StringBuilder();
+        for (String line : rawLines) {
+            aligner.align(line, segmentation);
+            if (aligner.getNbInvalid() > 20)
+                break;
+        }
+        return segmentation.toString();
+    }
+
+    // the alignment of the trainers before DatacatTrainingAligner
+    private static String windowAlign(List<String> labeled, List<String> rawLines) {
+        StringBuilder segmentation = new StringBuilder();
+        int q = 0;
+        String previousTag = null;
+        int nbInvalid = 0;
+        for (String line : rawLines) {
+            int ii = line.indexOf(' ');
+            String token = null;
+            if (ii != -1) {
+                token = UnicodeUtil.normaliseTextAndRemoveSpaces(line.substring(0, ii));
+            }
+            for (int pp = q; pp < labeled.size(); pp++) {
+                String localLine = labeled.get(pp);
+                StringTokenizer st = new StringTokenizer(localLine, " \t");
+                if (st.hasMoreTokens()) {
+                    String localToken = UnicodeUtil.normaliseTextAndRemoveSpaces(st.nextToken());
+                    if (localToken.equals(token)) {
+                        String tag = st.nextToken();
+                        segmentation.append(line).append(" ").append(tag);
+                        previousTag = tag;
+                        q = pp + 1;
+                        nbInvalid = 0;
+                        break;
+                    }
+                }
+                if (pp - q > 5) {
+                    nbInvalid++;
+                    if (previousTag != null)
+                        segmentation.append(line).append(" ").append(previousTag);
+                    break;
+                }
+            }
+            if (nbInvalid > 20)
+                break;
+        }
+        return segmentation.toString();
+    }
+}